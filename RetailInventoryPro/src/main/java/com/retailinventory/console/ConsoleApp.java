@@ -19,12 +19,13 @@ public class ConsoleApp {
     public static void main(String[] args) {
         System.out.println("=== Retail Inventory Pro - Console Version ===\n");
         
-        // Initialize services
-        inventoryService = new InventoryService();
-        orderService = new OrderService();
-        customerService = new CustomerService();
+        // Initialize services over one shared data store
+        DataStore dataStore = DataStore.getInstance();
+        inventoryService = new InventoryService(dataStore);
+        customerService = new CustomerService(dataStore);
+        orderService = new OrderService(dataStore, inventoryService, customerService);
         userService = new UserService();
-        reportService = new ReportService();
+        reportService = new ReportService(dataStore, inventoryService, orderService);
         
         // Login
         if (!login()) {
@@ -704,7 +705,7 @@ public class ConsoleApp {
         System.out.println("\n=== DATA BACKUP ===");
         
         try {
-            inventoryService.getFileService().createBackup();
+            inventoryService.getRepository().createBackup();
             System.out.println("Backup created successfully!");
         } catch (Exception e) {
             System.out.println("Error creating backup: " + e.getMessage());
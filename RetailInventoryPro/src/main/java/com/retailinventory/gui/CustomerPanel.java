@@ -7,8 +7,8 @@ import java.awt.*;
 public class CustomerPanel extends JPanel {
     private CustomerService customerService;
     
-    public CustomerPanel() {
-        this.customerService = new CustomerService();
+    public CustomerPanel(CustomerService customerService) {
+        this.customerService = customerService;
         initializeUI();
     }
     
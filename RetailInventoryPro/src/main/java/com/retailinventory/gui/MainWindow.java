@@ -9,6 +9,7 @@ import java.awt.event.*;
 public class MainWindow extends JFrame {
     private UserService userService;
     private InventoryService inventoryService;
+    private CustomerService customerService;
     private OrderService orderService;
     private ReportService reportService;
     
@@ -19,9 +20,13 @@ public class MainWindow extends JFrame {
     public MainWindow(User user) {
         this.currentUser = user;
         this.userService = new UserService();
-        this.inventoryService = new InventoryService();
-        this.orderService = new OrderService();
-        this.reportService = new ReportService();
+        
+        // All services share one loaded copy of the data
+        DataStore dataStore = DataStore.getInstance();
+        this.inventoryService = new InventoryService(dataStore);
+        this.customerService = new CustomerService(dataStore);
+        this.orderService = new OrderService(dataStore, inventoryService, customerService);
+        this.reportService = new ReportService(dataStore, inventoryService, orderService);
         
         initializeUI();
     }
@@ -113,14 +118,18 @@ public class MainWindow extends JFrame {
         JMenu reportsMenu = new JMenu("Reports");
         JMenuItem dailyReportItem = new JMenuItem("Daily Report");
         JMenuItem monthlyReportItem = new JMenuItem("Monthly Report");
+        JMenuItem yearlyReportItem = new JMenuItem("Yearly Report");
         JMenuItem salesReportItem = new JMenuItem("Sales Report");
         JMenuItem inventoryReportItem = new JMenuItem("Inventory Report");
         JMenuItem profitReportItem = new JMenuItem("Profit & Loss");
         
         dailyReportItem.addActionListener(e -> generateDailyReport());
+        monthlyReportItem.addActionListener(e -> generateMonthlyReport());
+        yearlyReportItem.addActionListener(e -> generateYearlyReport());
         
         reportsMenu.add(dailyReportItem);
         reportsMenu.add(monthlyReportItem);
+        reportsMenu.add(yearlyReportItem);
         reportsMenu.addSeparator();
         reportsMenu.add(salesReportItem);
         reportsMenu.add(inventoryReportItem);
@@ -169,7 +178,7 @@ public class MainWindow extends JFrame {
         SalesPanel salesPanel = new SalesPanel(inventoryService, orderService);
         InventoryPanel inventoryPanel = new InventoryPanel(inventoryService);
         ReportPanel reportPanel = new ReportPanel(reportService);
-        CustomerPanel customerPanel = new CustomerPanel();
+        CustomerPanel customerPanel = new CustomerPanel(customerService);
         
         // Add tabs
         tabbedPane.addTab("Dashboard", dashboardPanel);
@@ -212,7 +221,7 @@ public class MainWindow extends JFrame {
     // Action methods
     private void backupData() {
         try {
-            inventoryService.getFileService().createBackup();
+            inventoryService.getRepository().createBackup();
             JOptionPane.showMessageDialog(this, 
                 "Backup created successfully!", 
                 "Backup Complete", 
@@ -281,6 +290,38 @@ public class MainWindow extends JFrame {
         }
     }
     
+    private void generateMonthlyReport() {
+        try {
+            reportService.generateMonthlyReport(java.time.YearMonth.now());
+            JOptionPane.showMessageDialog(this, 
+                "Monthly report generated successfully!", 
+                "Report Generated", 
+                JOptionPane.INFORMATION_MESSAGE);
+            updateStatus("Monthly report generated");
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(this, 
+                "Error generating report: " + e.getMessage(), 
+                "Report Failed", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private void generateYearlyReport() {
+        try {
+            reportService.generateYearlyReport(java.time.Year.now());
+            JOptionPane.showMessageDialog(this, 
+                "Yearly report generated successfully!", 
+                "Report Generated", 
+                JOptionPane.INFORMATION_MESSAGE);
+            updateStatus("Yearly report generated");
+        } catch (Exception e) {
+            JOptionPane.showMessageDialog(this, 
+                "Error generating report: " + e.getMessage(), 
+                "Report Failed", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
     private void logout() {
         int confirm = JOptionPane.showConfirmDialog(this,
             "Are you sure you want to logout?", 
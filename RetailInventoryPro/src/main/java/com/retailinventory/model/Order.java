@@ -18,8 +18,8 @@ public class Order {
     private String notes;
     private LocalDateTime completionDate;
     
+    // The ID is assigned by OrderService, or read back by the repository
     public Order() {
-        this.orderId = "ORD" + System.currentTimeMillis() % 10000;
         this.orderDate = LocalDateTime.now();
         this.items = new ArrayList<>();
         this.status = "PENDING";
@@ -45,6 +45,16 @@ public class Order {
         finalAmount = totalAmount + tax - discount;
     }
     
+    // Sets amounts read back from storage as they were saved. The setters
+    // recalculate from the items, which would replace a stored tax (or the
+    // totals of an order whose items aren't loaded) with today's figures.
+    public void restoreAmounts(double totalAmount, double discount, double tax, double finalAmount) {
+        this.totalAmount = totalAmount;
+        this.discount = discount;
+        this.tax = tax;
+        this.finalAmount = finalAmount;
+    }
+    
     public int getTotalItems() {
         return items.stream()
             .mapToInt(OrderItem::getQuantity)
@@ -6,6 +6,9 @@ public class OrderItem {
     private double price;
     private int quantity;
     private double discount;
+    // The product's category when the item was sold, so sales by category
+    // don't move when the product is later recategorised or deleted
+    private String category;
     
     public OrderItem() {}
     
@@ -36,6 +39,9 @@ public class OrderItem {
     public double getDiscount() { return discount; }
     public void setDiscount(double discount) { this.discount = discount; }
     
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+    
     @Override
     public String toString() {
         return String.format("%s x%d @ $%.2f = $%.2f", 
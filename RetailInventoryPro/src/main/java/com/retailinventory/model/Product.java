@@ -25,6 +25,7 @@ public class Product implements Serializable {
     private String imagePath;
     private LocalDate lastRestocked;
     private int quantitySold;
+    private StockLots lots = new StockLots();
     
     public Product() {
         this.productId = "PROD" + System.currentTimeMillis() % 10000;
@@ -44,6 +45,33 @@ public class Product implements Serializable {
         this.quantityInStock = quantity;
     }
     
+    // A copy with its own lots, e.g. to save the product as it was after its
+    // lock has been released
+    public Product copy() {
+        Product copy = new Product();
+        copy.productId = productId;
+        copy.barcode = barcode;
+        copy.name = name;
+        copy.category = category;
+        copy.description = description;
+        copy.purchasePrice = purchasePrice;
+        copy.sellingPrice = sellingPrice;
+        copy.quantityInStock = quantityInStock;
+        copy.minStockLevel = minStockLevel;
+        copy.maxStockLevel = maxStockLevel;
+        copy.supplierId = supplierId;
+        copy.expiryDate = expiryDate;
+        copy.location = location;
+        copy.isPerishable = isPerishable;
+        copy.unit = unit;
+        copy.weight = weight;
+        copy.imagePath = imagePath;
+        copy.lastRestocked = lastRestocked;
+        copy.quantitySold = quantitySold;
+        copy.lots = lots.copy();
+        return copy;
+    }
+    
     // Business methods
     public boolean needsReorder() {
         return quantityInStock <= minStockLevel;
@@ -107,6 +135,8 @@ public class Product implements Serializable {
     public void setQuantityInStock(int quantityInStock) { 
         if (quantityInStock < 0) throw new IllegalArgumentException("Quantity cannot be negative");
         this.quantityInStock = quantityInStock; 
+        // Lots can never hold more than is in stock
+        if (lots.getTotalQuantity() > quantityInStock) lots.trimTo(quantityInStock);
     }
     
     public int getMinStockLevel() { return minStockLevel; }
@@ -142,6 +172,9 @@ public class Product implements Serializable {
     public int getQuantitySold() { return quantitySold; }
     public void setQuantitySold(int quantitySold) { this.quantitySold = quantitySold; }
     
+    public StockLots getLots() { return lots; }
+    public void setLots(StockLots lots) { this.lots = lots != null ? lots : new StockLots(); }
+    
     @Override
     public String toString() {
         return String.format("%s - %s (Stock: %d, Price: $%.2f)", 
@@ -0,0 +1,205 @@
+package com.retailinventory.model;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.*;
+
+// A product's stock lots (batch number, quantity, expiry) in parallel arrays,
+// kept in first-expiring-first-out order. Lots without an expiry date sort
+// last. Stock received before lot tracking, or without a batch, is simply
+// not in any lot, so the lot total can be below the product's stock.
+public class StockLots implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int NO_EXPIRY = Integer.MAX_VALUE;
+    private static final String LOT_SEPARATOR = "|";
+    private static final String FIELD_SEPARATOR = ":";
+    
+    private String[] lotIds = new String[0];
+    private int[] quantities = new int[0];
+    private int[] expiryDays = new int[0];
+    private int size;
+    
+    // Adds to an existing lot with the same ID and expiry, otherwise inserts a new one
+    public void add(String lotId, int quantity, LocalDate expiryDate) {
+        String id = toId(lotId);
+        int day = toDay(expiryDate);
+        
+        int existing = indexOf(id, day);
+        if (existing >= 0) {
+            quantities[existing] += quantity;
+            return;
+        }
+        
+        if (size == lotIds.length) {
+            int capacity = Math.max(2, size * 2);
+            lotIds = Arrays.copyOf(lotIds, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            expiryDays = Arrays.copyOf(expiryDays, capacity);
+        }
+        
+        // After every lot expiring on or before it
+        int at = size;
+        while (at > 0 && expiryDays[at - 1] > day) {
+            at--;
+        }
+        System.arraycopy(lotIds, at, lotIds, at + 1, size - at);
+        System.arraycopy(quantities, at, quantities, at + 1, size - at);
+        System.arraycopy(expiryDays, at, expiryDays, at + 1, size - at);
+        lotIds[at] = id;
+        quantities[at] = quantity;
+        expiryDays[at] = day;
+        size++;
+    }
+    
+    // Takes up to 'quantity' units from lots still good on 'today', earliest expiry
+    // first, and returns the units taken as lots of their own
+    public StockLots take(int quantity, LocalDate today) {
+        StockLots taken = new StockLots();
+        int remaining = quantity;
+        for (int i = firstGoodLot(today); i < size && remaining > 0; i++) {
+            int units = Math.min(quantities[i], remaining);
+            quantities[i] -= units;
+            remaining -= units;
+            taken.add(lotIds[i], units, getExpiryDate(i));
+        }
+        removeEmpty();
+        return taken;
+    }
+    
+    // Puts back units returned by take()
+    public void addAll(StockLots lots) {
+        for (int i = 0; i < lots.size; i++) {
+            add(lots.lotIds[i], lots.quantities[i], lots.getExpiryDate(i));
+        }
+    }
+    
+    // Takes up to 'quantity' units out of the lot with this ID and expiry, e.g.
+    // to take back a delivery, and returns how many were taken
+    public int remove(String lotId, int quantity, LocalDate expiryDate) {
+        int i = indexOf(toId(lotId), toDay(expiryDate));
+        if (i < 0) {
+            return 0;
+        }
+        int units = Math.min(quantities[i], quantity);
+        quantities[i] -= units;
+        removeEmpty();
+        return units;
+    }
+    
+    // Drops units, earliest expiry first, until no more than 'quantity' remain
+    public void trimTo(int quantity) {
+        int excess = getTotalQuantity() - quantity;
+        for (int i = 0; i < size && excess > 0; i++) {
+            int units = Math.min(quantities[i], excess);
+            quantities[i] -= units;
+            excess -= units;
+        }
+        removeEmpty();
+    }
+    
+    public int getTotalQuantity() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += quantities[i];
+        }
+        return total;
+    }
+    
+    public int getExpiredQuantity(LocalDate today) {
+        int expired = 0;
+        for (int i = 0, end = firstGoodLot(today); i < end; i++) {
+            expired += quantities[i];
+        }
+        return expired;
+    }
+    
+    public LocalDate getEarliestExpiry() {
+        return size > 0 ? getExpiryDate(0) : null;
+    }
+    
+    public int size() { return size; }
+    public boolean isEmpty() { return size == 0; }
+    public String getLotId(int index) { return lotIds[index]; }
+    public int getQuantity(int index) { return quantities[index]; }
+    
+    public LocalDate getExpiryDate(int index) {
+        return expiryDays[index] != NO_EXPIRY ? LocalDate.ofEpochDay(expiryDays[index]) : null;
+    }
+    
+    public StockLots copy() {
+        StockLots copy = new StockLots();
+        copy.lotIds = Arrays.copyOf(lotIds, size);
+        copy.quantities = Arrays.copyOf(quantities, size);
+        copy.expiryDays = Arrays.copyOf(expiryDays, size);
+        copy.size = size;
+        return copy;
+    }
+    
+    // One text field: quantity:expiry:lotId per lot, separated by '|'. The lot ID
+    // goes last so it may contain ':'.
+    public String encode() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            if (i > 0) text.append(LOT_SEPARATOR);
+            text.append(quantities[i]).append(FIELD_SEPARATOR);
+            if (expiryDays[i] != NO_EXPIRY) text.append(getExpiryDate(i));
+            text.append(FIELD_SEPARATOR).append(lotIds[i]);
+        }
+        return text.toString();
+    }
+    
+    public static StockLots decode(String text) {
+        StockLots lots = new StockLots();
+        if (text == null || text.isEmpty()) {
+            return lots;
+        }
+        
+        for (String lot : text.split("\\" + LOT_SEPARATOR)) {
+            String[] fields = lot.split(FIELD_SEPARATOR, 3);
+            if (fields.length < 3) continue;
+            lots.add(fields[2], Integer.parseInt(fields[0]),
+                fields[1].isEmpty() ? null : LocalDate.parse(fields[1]));
+        }
+        return lots;
+    }
+    
+    private static String toId(String lotId) {
+        return lotId != null ? lotId.replace(LOT_SEPARATOR, "/") : "";
+    }
+    
+    private static int toDay(LocalDate expiryDate) {
+        return expiryDate != null ? (int) expiryDate.toEpochDay() : NO_EXPIRY;
+    }
+    
+    private int indexOf(String id, int day) {
+        for (int i = 0; i < size; i++) {
+            if (expiryDays[i] == day && lotIds[i].equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    private int firstGoodLot(LocalDate today) {
+        int day = (int) today.toEpochDay();
+        int i = 0;
+        while (i < size && expiryDays[i] < day) {
+            i++;
+        }
+        return i;
+    }
+    
+    private void removeEmpty() {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (quantities[i] > 0) {
+                lotIds[kept] = lotIds[i];
+                quantities[kept] = quantities[i];
+                expiryDays[kept] = expiryDays[i];
+                kept++;
+            }
+        }
+        Arrays.fill(lotIds, kept, size, null);
+        size = kept;
+    }
+}
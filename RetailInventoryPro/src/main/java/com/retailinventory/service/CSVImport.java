@@ -0,0 +1,78 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Product;
+import com.retailinventory.model.Order;
+import com.retailinventory.model.Customer;
+import com.retailinventory.util.CSVHandler;
+import com.retailinventory.util.CSVRow;
+import com.retailinventory.util.MappedCSVLoader;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Reads the data files FileDataService keeps, journals included, for a one-off
+// import into a database. Unlike FileDataService it creates no directories or
+// sample data, and writes no snapshots, journals or compacted files.
+final class CSVImport {
+    private static final String INVENTORY_DIR = "data/inventory/";
+    private static final String ORDERS_DIR = "data/orders/";
+    private static final String PRODUCTS_FILE = INVENTORY_DIR + "products.csv";
+    private static final String PRODUCTS_JOURNAL = INVENTORY_DIR + "products.journal";
+    private static final String ORDERS_FILE = ORDERS_DIR + "orders.csv";
+    private static final String ORDER_ITEMS_FILE = ORDERS_DIR + "order_items.csv";
+    private static final String ORDER_EVENTS_JOURNAL = ORDERS_DIR + "order_events.journal";
+    private static final String CUSTOMERS_FILE = "data/customers/customers.csv";
+    private static final String CUSTOMERS_JOURNAL = "data/customers/customers.journal";
+    // A journal set aside by a compaction that didn't finish, replayed before the journal
+    private static final String COMPACTING = ".compacting";
+    
+    List<Product> loadProducts() throws IOException {
+        Map<String, Product> products = new LinkedHashMap<>();
+        for (Product product : MappedCSVLoader.load(PRODUCTS_FILE, true, row -> FileRecords.parseProductRow(row, 0))) {
+            products.put(product.getProductId(), product);
+        }
+        replay(PRODUCTS_JOURNAL, entry -> FileRecords.applyProductEntry(entry, products));
+        return new ArrayList<>(products.values());
+    }
+    
+    List<Order> loadOrders() throws IOException {
+        List<Order> orders = MappedCSVLoader.load(ORDERS_FILE, true, FileRecords::parseOrderRow);
+        
+        // Items of orders saved before order_items.csv existed are still in
+        // their own items_<orderId>.csv files
+        FileRecords.OrderItems items = new FileRecords.OrderItems();
+        if (Files.exists(Paths.get(ORDER_ITEMS_FILE))) {
+            CSVHandler.streamCSV(ORDER_ITEMS_FILE, false, items);
+        } else if (Files.isDirectory(Paths.get(ORDERS_DIR))) {
+            try (DirectoryStream<Path> legacyFiles = 
+                    Files.newDirectoryStream(Paths.get(ORDERS_DIR), "items_*.csv")) {
+                for (Path file : legacyFiles) {
+                    CSVHandler.streamCSV(file.toString(), true, items);
+                }
+            }
+        }
+        items.attachTo(orders);
+        
+        Map<String, Order> byId = new HashMap<>();
+        for (Order order : orders) {
+            byId.put(order.getOrderId(), order);
+        }
+        replay(ORDER_EVENTS_JOURNAL, event -> FileRecords.applyOrderEvent(event, byId));
+        return orders;
+    }
+    
+    List<Customer> loadCustomers() throws IOException {
+        Map<String, Customer> customers = new LinkedHashMap<>();
+        for (Customer customer : MappedCSVLoader.load(CUSTOMERS_FILE, true, row -> FileRecords.parseCustomerRow(row, 0))) {
+            customers.put(customer.getCustomerId(), customer);
+        }
+        replay(CUSTOMERS_JOURNAL, entry -> FileRecords.applyCustomerEntry(entry, customers));
+        return new ArrayList<>(customers.values());
+    }
+    
+    private void replay(String journalFile, Consumer<CSVRow> handler) throws IOException {
+        CSVHandler.streamCSV(journalFile + COMPACTING, false, handler);
+        CSVHandler.streamCSV(journalFile, false, handler);
+    }
+}
@@ -7,23 +7,15 @@ import java.util.stream.Collectors;
 
 public class CustomerService {
     private Map<String, Customer> customers;
-    private FileDataService fileDataService;
+    private DataRepository repository;
     
     public CustomerService() {
-        this.customers = new HashMap<>();
-        this.fileDataService = new FileDataService();
-        loadCustomers();
+        this(DataStore.getInstance());
     }
     
-    private void loadCustomers() {
-        try {
-            List<Customer> customerList = fileDataService.loadCustomers();
-            for (Customer customer : customerList) {
-                customers.put(customer.getCustomerId(), customer);
-            }
-        } catch (Exception e) {
-            System.err.println("Error loading customers: " + e.getMessage());
-        }
+    public CustomerService(DataStore dataStore) {
+        this.customers = dataStore.getCustomers();
+        this.repository = dataStore.getRepository();
     }
     
     public void addCustomer(Customer customer) throws Exception {
@@ -32,7 +24,7 @@ public class CustomerService {
         }
         
         customers.put(customer.getCustomerId(), customer);
-        fileDataService.saveCustomer(customer);
+        repository.saveCustomer(customer);
     }
     
     public void updateCustomer(Customer customer) throws Exception {
@@ -41,11 +33,18 @@ public class CustomerService {
         }
         
         customers.put(customer.getCustomerId(), customer);
-        fileDataService.saveCustomer(customer);
+        repository.saveCustomer(customer);
+    }
+    
+    // Saves customers already changed in place, in one write
+    public void updateCustomers(Collection<Customer> changed) throws Exception {
+        if (!changed.isEmpty()) {
+            repository.saveCustomers(new ArrayList<>(changed));
+        }
     }
     
     public void deleteCustomer(String customerId) throws Exception {
-        if (!customers.containsKey(customerId)) {
+        if (getCustomer(customerId) == null) {
             throw new Exception("Customer not found: " + customerId);
         }
         
@@ -54,7 +53,7 @@ public class CustomerService {
     }
     
     public Customer getCustomer(String customerId) {
-        return customers.get(customerId);
+        return customerId != null ? customers.get(customerId) : null;
     }
     
     public List<Customer> getAllCustomers() {
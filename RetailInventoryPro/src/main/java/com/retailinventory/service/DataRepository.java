@@ -0,0 +1,64 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Product;
+import com.retailinventory.model.Order;
+import com.retailinventory.model.Customer;
+import com.retailinventory.exception.FileProcessingException;
+import java.util.List;
+
+// Persistence operations shared by the CSV files (FileDataService) and the
+// embedded database backends (JdbcDataService). Selected by database.type.
+public interface DataRepository {
+    
+    // Product operations
+    List<Product> loadProducts() throws FileProcessingException;
+    
+    void saveProduct(Product product) throws FileProcessingException;
+    
+    void saveAllProducts(List<Product> products) throws FileProcessingException;
+    
+    // Stores several changed products as one write: all of them or none
+    void saveProducts(List<Product> products) throws FileProcessingException;
+    
+    void deleteProduct(String productId) throws FileProcessingException;
+    
+    // Stores changed products and removes deleted ones as one write
+    void saveProductChanges(List<Product> saved, List<String> deleted) throws FileProcessingException;
+    
+    void logStockMovement(String productId, String movementType,
+                          int quantityChange, int newQuantity, String reference)
+            throws FileProcessingException;
+    
+    void saveLowStockAlert(Product product) throws FileProcessingException;
+    
+    // Order operations
+    List<Order> loadOrders() throws FileProcessingException;
+    
+    void saveOrder(Order order) throws FileProcessingException;
+    
+    // Stores several new orders and their items as one write
+    void saveOrders(List<Order> orders) throws FileProcessingException;
+    
+    void updateOrder(Order order) throws FileProcessingException;
+    
+    // Sales rollup operations
+    List<SalesRollups.Row> loadSalesRollups() throws FileProcessingException;
+    
+    // Stores changed rows, replacing any saved row for the same day, dimension and key
+    void saveSalesRollups(List<SalesRollups.Row> rows) throws FileProcessingException;
+    
+    void saveAllSalesRollups(List<SalesRollups.Row> rows) throws FileProcessingException;
+    
+    // Customer operations
+    List<Customer> loadCustomers() throws FileProcessingException;
+    
+    void saveCustomer(Customer customer) throws FileProcessingException;
+    
+    // Stores several changed or new customers as one write
+    void saveCustomers(List<Customer> customers) throws FileProcessingException;
+    
+    // Maintenance
+    void createBackup() throws FileProcessingException;
+    
+    void generateDailyReport() throws FileProcessingException;
+}
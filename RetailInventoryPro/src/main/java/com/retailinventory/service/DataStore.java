@@ -0,0 +1,214 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Product;
+import com.retailinventory.model.Order;
+import com.retailinventory.model.Customer;
+import com.retailinventory.model.OrderItem;
+import com.retailinventory.exception.FileProcessingException;
+import com.retailinventory.util.AppConfig;
+import com.retailinventory.util.IdGenerator;
+import com.retailinventory.util.StripedLocks;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Process-wide owner of the loaded products, orders and customers.
+// Every service reads and writes these maps instead of keeping its own copy.
+public class DataStore {
+    private static DataStore instance;
+    
+    private final DataRepository repository;
+    private final Map<String, Product> products;
+    private final Map<String, Order> orders;
+    private final Map<String, Customer> customers;
+    private final ProductIndex productIndex;
+    private final OrderIndex orderIndex;
+    // Serialises changes to one product; different products proceed in parallel
+    private final StripedLocks productLocks;
+    private final ProductCommitQueue productCommits;
+    private final ReservationLedger reservations;
+    private final SalesRollups salesRollups;
+    private final IdGenerator orderIds;
+    
+    public static synchronized DataStore getInstance() {
+        if (instance == null) {
+            instance = new DataStore(createRepository());
+        }
+        return instance;
+    }
+    
+    // database.type=h2|sqlite selects an embedded database, anything else the CSV files
+    private static DataRepository createRepository() {
+        String type = AppConfig.get("database.type", "file").toLowerCase();
+        
+        if (type.equals(JdbcDataService.TYPE_H2) || type.equals(JdbcDataService.TYPE_SQLITE)) {
+            try {
+                return new JdbcDataService(type, AppConfig.get("database.path", "./data/"));
+            } catch (FileProcessingException e) {
+                System.err.println("Falling back to file storage: " + e.getMessage());
+            }
+        }
+        
+        return new FileDataService();
+    }
+    
+    public DataStore(DataRepository repository) {
+        this.repository = repository;
+        this.products = new ConcurrentHashMap<>();
+        this.orders = new ConcurrentHashMap<>();
+        this.customers = new ConcurrentHashMap<>();
+        this.productLocks = new StripedLocks(Runtime.getRuntime().availableProcessors() * 16);
+        this.productCommits = new ProductCommitQueue(repository);
+        // Each node keeps its own mark; {node} in the path is its number
+        int node = AppConfig.getInt("order.id.node", 0);
+        this.orderIds = new IdGenerator(node,
+            AppConfig.get("order.id.mark.file", "./data/orders/order_id_{node}.mark")
+                .replace("{node}", String.valueOf(node)));
+        this.reservations = new ReservationLedger(
+            AppConfig.getLong("reservation.ttl.seconds", 900) * 1000,
+            AppConfig.getLong("reservation.tick.ms", 1000));
+        
+        loadProducts();
+        loadOrders();
+        loadCustomers();
+        restoreReservations();
+        
+        this.productIndex = new ProductIndex(products.values());
+        this.orderIndex = new OrderIndex(orders.values());
+        this.salesRollups = new SalesRollups(repository, products);
+        this.salesRollups.load(orders.values());
+    }
+    
+    private void loadProducts() {
+        try {
+            List<Product> productList = repository.loadProducts();
+            for (Product product : productList) {
+                products.put(product.getProductId(), product);
+            }
+            System.out.println("Loaded " + products.size() + " products from file.");
+        } catch (Exception e) {
+            System.err.println("Error loading inventory: " + e.getMessage());
+            createSampleInventory();
+        }
+    }
+    
+    private void loadOrders() {
+        try {
+            List<Order> orderList = repository.loadOrders();
+            for (Order order : orderList) {
+                orders.put(order.getOrderId(), order);
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading orders: " + e.getMessage());
+        }
+    }
+    
+    private void loadCustomers() {
+        try {
+            List<Customer> customerList = repository.loadCustomers();
+            for (Customer customer : customerList) {
+                customers.put(customer.getCustomerId(), customer);
+            }
+        } catch (Exception e) {
+            System.err.println("Error loading customers: " + e.getMessage());
+        }
+    }
+    
+    // Pending orders keep their hold across a restart, for whatever is left of its TTL
+    private void restoreReservations() {
+        long ttlMillis = AppConfig.getLong("reservation.ttl.seconds", 900) * 1000;
+        LocalDateTime now = LocalDateTime.now();
+        
+        for (Order order : orders.values()) {
+            if (!"PENDING".equals(order.getStatus()) || order.getOrderDate() == null) continue;
+            
+            long remaining = ttlMillis - Duration.between(order.getOrderDate(), now).toMillis();
+            if (remaining <= 0) continue;
+            
+            Map<String, Integer> quantities = new HashMap<>();
+            for (OrderItem item : order.getItems()) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+            reservations.reserve(order.getOrderId(), quantities, remaining);
+        }
+    }
+    
+    private void createSampleInventory() {
+        try {
+            Product p1 = new Product("Coca-Cola 330ml", "Beverage", 0.45, 0.99, 120);
+            p1.setMinStockLevel(50);
+            p1.setMaxStockLevel(200);
+            p1.setSupplierId("SUPP001");
+            p1.setLocation("Aisle 3, Shelf B");
+            
+            Product p2 = new Product("Lays Classic Chips 150g", "Snacks", 0.85, 1.99, 80);
+            p2.setMinStockLevel(30);
+            p2.setMaxStockLevel(150);
+            p2.setSupplierId("SUPP002");
+            p2.setLocation("Aisle 5, Shelf A");
+            p2.setExpiryDate(LocalDate.now().plusMonths(6));
+            p2.setPerishable(true);
+            
+            Product p3 = new Product("Dove Soap 100g", "Personal Care", 1.20, 2.49, 45);
+            p3.setMinStockLevel(20);
+            p3.setMaxStockLevel(100);
+            p3.setSupplierId("SUPP003");
+            p3.setLocation("Aisle 7, Shelf C");
+            
+            products.put(p1.getProductId(), p1);
+            products.put(p2.getProductId(), p2);
+            products.put(p3.getProductId(), p3);
+            
+            repository.saveAllProducts(new ArrayList<>(products.values()));
+            
+        } catch (Exception e) {
+            System.err.println("Error creating sample inventory: " + e.getMessage());
+        }
+    }
+    
+    public DataRepository getRepository() {
+        return repository;
+    }
+    
+    public Map<String, Product> getProducts() {
+        return products;
+    }
+    
+    public ProductIndex getProductIndex() {
+        return productIndex;
+    }
+    
+    public OrderIndex getOrderIndex() {
+        return orderIndex;
+    }
+    
+    public StripedLocks getProductLocks() {
+        return productLocks;
+    }
+    
+    public ProductCommitQueue getProductCommits() {
+        return productCommits;
+    }
+    
+    public ReservationLedger getReservations() {
+        return reservations;
+    }
+    
+    public IdGenerator getOrderIds() {
+        return orderIds;
+    }
+    
+    public SalesRollups getSalesRollups() {
+        return salesRollups;
+    }
+    
+    public Map<String, Order> getOrders() {
+        return orders;
+    }
+    
+    public Map<String, Customer> getCustomers() {
+        return customers;
+    }
+}
@@ -1,34 +1,54 @@
 package com.retailinventory.service;
 
 import com.retailinventory.model.Product;
+import com.retailinventory.model.StockLots;
 import com.retailinventory.model.Order;
 import com.retailinventory.model.OrderItem;
 import com.retailinventory.model.Customer;
 import com.retailinventory.model.Supplier;
 import com.retailinventory.model.User;
 import com.retailinventory.exception.FileProcessingException;
+import com.retailinventory.util.AppConfig;
 import com.retailinventory.util.CSVHandler;
+import com.retailinventory.util.CSVRow;
+import com.retailinventory.util.ColumnarSnapshot;
+import com.retailinventory.util.GroupCommitLog;
+import com.retailinventory.util.JournalFile;
+import com.retailinventory.util.MappedCSVLoader;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
-public class FileDataService {
+public class FileDataService implements DataRepository {
     private static final String BASE_DIR = "data/";
     private static final String INVENTORY_DIR = BASE_DIR + "inventory/";
     private static final String PRODUCTS_FILE = INVENTORY_DIR + "products.csv";
+    private static final String PRODUCTS_JOURNAL = INVENTORY_DIR + "products.journal";
+    private static final String PRODUCTS_SNAPSHOT = INVENTORY_DIR + "products.snapshot";
     private static final String MOVEMENT_LOG = INVENTORY_DIR + "stock_movement.csv";
     private static final String LOW_STOCK_FILE = INVENTORY_DIR + "low_stock_alerts.csv";
     
     private static final String ORDERS_DIR = BASE_DIR + "orders/";
     private static final String ORDERS_FILE = ORDERS_DIR + "orders.csv";
+    private static final String ORDERS_SNAPSHOT = ORDERS_DIR + "orders.snapshot";
+    private static final String ORDER_ITEMS_FILE = ORDERS_DIR + "order_items.csv";
+    private static final String ORDER_EVENTS_JOURNAL = ORDERS_DIR + "order_events.journal";
     
     private static final String CUSTOMERS_DIR = BASE_DIR + "customers/";
     private static final String CUSTOMERS_FILE = CUSTOMERS_DIR + "customers.csv";
+    private static final String CUSTOMERS_SNAPSHOT = CUSTOMERS_DIR + "customers.snapshot";
+    private static final String CUSTOMERS_JOURNAL = CUSTOMERS_DIR + "customers.journal";
     
     private static final String SUPPLIERS_DIR = BASE_DIR + "suppliers/";
     private static final String SUPPLIERS_FILE = SUPPLIERS_DIR + "suppliers.csv";
@@ -39,12 +59,67 @@ public class FileDataService {
     private static final String BACKUP_DIR = BASE_DIR + "backups/";
     private static final String REPORTS_DIR = BASE_DIR + "reports/";
     private static final String LOGS_DIR = BASE_DIR + "logs/";
+    private static final String ROLLUPS_FILE = REPORTS_DIR + "daily_rollups.csv";
+    private static final String ROLLUPS_JOURNAL = REPORTS_DIR + "daily_rollups.journal";
     
     private static final DateTimeFormatter DATE_FORMATTER = 
         DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter DATETIME_FORMATTER = 
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
+    // Journal entries replayed over products.csv before it is rewritten
+    private static final int PRODUCT_JOURNAL_COMPACT_THRESHOLD = 1000;
+    
+    // Status events folded into orders.csv once this many have been appended
+    private static final int ORDER_EVENTS_COMPACT_THRESHOLD = 1000;
+    
+    // Changed rollup rows folded into daily_rollups.csv once this many have been appended
+    private static final int ROLLUPS_JOURNAL_COMPACT_THRESHOLD = 1000;
+    
+    // Customer rows replayed over customers.csv before it is rewritten
+    private static final int CUSTOMER_JOURNAL_COMPACT_THRESHOLD = 1000;
+    
+    // A journal set aside while a compaction folds it in, and the compaction's
+    // rewritten CSV and snapshot waiting to be swapped in
+    private static final String COMPACTING = ".compacting";
+    private static final String COMPACTED = ".compacted";
+    
+    private static final String[] ROLLUP_HEADER = {
+        "Date", "Dimension", "Key", "Revenue", "Items", "Transactions", "Tax", "Discount"
+    };
+    
+    private static final String[] ORDER_HEADER = {
+        "OrderID", "CustomerID", "OrderDate", "TotalAmount", "Discount",
+        "Tax", "FinalAmount", "Status", "PaymentMethod", "Notes", "CompletionDate"
+    };
+    
+    private static GroupCommitLog activityLog;
+    
+    // Journals are compacted here rather than on the thread whose append
+    // crossed the threshold, usually a checkout
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "journal-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Each table's loads, appends and compaction steps must not interleave
+    private final Object productFileLock = new Object();
+    private final Object orderFileLock = new Object();
+    private final Object customerFileLock = new Object();
+    private final Object rollupFileLock = new Object();
+    // Compactions and full rewrites run one at a time; always taken before a table's lock
+    private final Object compactionLock = new Object();
+    
+    private JournalFile productJournal;
+    private JournalFile customerJournal;
+    private JournalFile orderItemsFile;
+    private JournalFile orderAppender;
+    private JournalFile orderEventJournal;
+    private JournalFile rollupJournal;
+    // Tables with a compaction waiting to run
+    private final Set<String> compactionsQueued = ConcurrentHashMap.newKeySet();
+    
     static {
         try {
             createDirectories();
@@ -82,144 +157,393 @@ public class FileDataService {
     
     // Product operations
     public List<Product> loadProducts() throws FileProcessingException {
-        List<Product> products = new ArrayList<>();
-        
-        try {
-            if (!Files.exists(Paths.get(PRODUCTS_FILE))) {
-                return products;
-            }
+        synchronized (productFileLock) {
+            Map<String, Product> products = new LinkedHashMap<>();
             
-            List<String[]> rows = CSVHandler.readCSV(PRODUCTS_FILE);
+            try {
+                for (Product product : loadProductTable()) {
+                    products.put(product.getProductId(), product);
+                }
+                
+                // Replay mutations recorded since the last compaction
+                replaySetAside(PRODUCTS_JOURNAL, entry -> FileRecords.applyProductEntry(entry, products));
+                getProductJournal().forEach(entry -> FileRecords.applyProductEntry(entry, products));
+                
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to load products", e);
+            }
             
-            for (int i = 1; i < rows.size(); i++) { // Skip header
-                String[] row = rows.get(i);
-                if (row.length < 11) continue;
+            return new ArrayList<>(products.values());
+        }
+    }
+    
+    public void saveProduct(Product product) throws FileProcessingException {
+        synchronized (productFileLock) {
+            try {
+                String[] row = toProductRow(product);
+                String[] entry = new String[row.length + 1];
+                entry[0] = FileRecords.JOURNAL_UPSERT;
+                System.arraycopy(row, 0, entry, 1, row.length);
+                
+                getProductJournal().append(entry);
+                compactProductsIfNeeded();
                 
+            } catch (Exception e) {
+                throw new FileProcessingException("Failed to save product", e);
+            }
+        }
+    }
+    
+    public void saveProducts(List<Product> products) throws FileProcessingException {
+        saveProductChanges(products, Collections.emptyList());
+    }
+    
+    public void saveProductChanges(List<Product> saved, List<String> deleted) throws FileProcessingException {
+        synchronized (productFileLock) {
+            try {
+                List<String[]> entries = new ArrayList<>(saved.size() + deleted.size());
+                for (Product product : saved) {
+                    String[] row = toProductRow(product);
+                    String[] entry = new String[row.length + 1];
+                    entry[0] = FileRecords.JOURNAL_UPSERT;
+                    System.arraycopy(row, 0, entry, 1, row.length);
+                    entries.add(entry);
+                }
+                for (String productId : deleted) {
+                    entries.add(new String[]{FileRecords.JOURNAL_DELETE, productId});
+                }
+                
+                getProductJournal().append(entries);
+                compactProductsIfNeeded();
+                
+            } catch (Exception e) {
+                throw new FileProcessingException("Failed to save products", e);
+            }
+        }
+    }
+    
+    public void saveAllProducts(List<Product> products) throws FileProcessingException {
+        synchronized (compactionLock) {
+            synchronized (productFileLock) {
                 try {
-                    Product product = new Product();
-                    product.setProductId(row[0]);
-                    product.setBarcode(row[1]);
-                    product.setName(row[2]);
-                    product.setCategory(row[3]);
-                    product.setDescription(row.length > 4 ? row[4] : "");
-                    product.setPurchasePrice(Double.parseDouble(row[5]));
-                    product.setSellingPrice(Double.parseDouble(row[6]));
-                    product.setQuantityInStock(Integer.parseInt(row[7]));
-                    product.setMinStockLevel(Integer.parseInt(row[8]));
-                    product.setMaxStockLevel(Integer.parseInt(row[9]));
-                    product.setSupplierId(row[10]);
+                    writeProductTable(products, PRODUCTS_FILE, PRODUCTS_SNAPSHOT);
                     
-                    if (row.length > 11 && !row[11].isEmpty()) {
-                        product.setLocation(row[11]);
-                    }
-                    if (row.length > 12 && !row[12].isEmpty()) {
-                        product.setExpiryDate(LocalDate.parse(row[12], DATE_FORMATTER));
-                    }
-                    if (row.length > 13 && !row[13].isEmpty()) {
-                        product.setPerishable(Boolean.parseBoolean(row[13]));
-                    }
-                    if (row.length > 14 && !row[14].isEmpty()) {
-                        product.setUnit(row[14]);
-                    }
-                    if (row.length > 15 && !row[15].isEmpty()) {
-                        product.setQuantitySold(Integer.parseInt(row[15]));
-                    }
-                    if (row.length > 16 && !row[16].isEmpty()) {
-                        product.setLastRestocked(LocalDate.parse(row[16], DATE_FORMATTER));
-                    }
+                    // The CSV now holds every journaled change
+                    getProductJournal().truncate();
+                    Files.deleteIfExists(Paths.get(PRODUCTS_JOURNAL + COMPACTING));
                     
-                    products.add(product);
-                } catch (Exception e) {
-                    System.err.println("Error parsing product row: " + String.join(",", row));
+                } catch (IOException e) {
+                    throw new FileProcessingException("Failed to save products", e);
                 }
             }
-            
-        } catch (IOException e) {
-            throw new FileProcessingException("Failed to load products", e);
         }
+    }
+    
+    private void writeProductTable(List<Product> products, String csvFile, String snapshotFile) 
+            throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        
+        // Header
+        rows.add(new String[]{
+            "ProductID", "Barcode", "Name", "Category", "Description",
+            "PurchasePrice", "SellingPrice", "QuantityInStock", "MinStockLevel",
+            "MaxStockLevel", "SupplierID", "Location", "ExpiryDate", 
+            "IsPerishable", "Unit", "QuantitySold", "LastRestocked", "Lots"
+        });
         
+        // Data rows
+        for (Product product : products) {
+            rows.add(toProductRow(product));
+        }
+        
+        CSVHandler.writeChecksummedCSV(csvFile, rows);
+        writeProductSnapshot(products, snapshotFile, csvFile);
+    }
+    
+    public void deleteProduct(String productId) throws FileProcessingException {
+        synchronized (productFileLock) {
+            try {
+                getProductJournal().append(new String[]{FileRecords.JOURNAL_DELETE, productId});
+                compactProductsIfNeeded();
+            } catch (Exception e) {
+                throw new FileProcessingException("Failed to delete product", e);
+            }
+        }
+    }
+    
+    // products.csv contents, from the binary snapshot when it is still current
+    private List<Product> loadProductTable() throws IOException {
+        List<Product> products = readProductSnapshot();
+        if (products == null) {
+            products = MappedCSVLoader.load(PRODUCTS_FILE, true, row -> FileRecords.parseProductRow(row, 0));
+            writeProductSnapshot(products, PRODUCTS_SNAPSHOT, PRODUCTS_FILE);
+        }
         return products;
     }
     
-    public void saveProduct(Product product) throws FileProcessingException {
+    private List<Product> readProductSnapshot() {
         try {
-            List<Product> products = loadProducts();
-            boolean found = false;
-            
-            for (int i = 0; i < products.size(); i++) {
-                if (products.get(i).getProductId().equals(product.getProductId())) {
-                    products.set(i, product);
-                    found = true;
-                    break;
-                }
+            ColumnarSnapshot.Reader snapshot = ColumnarSnapshot.read(PRODUCTS_SNAPSHOT, PRODUCTS_FILE);
+            if (snapshot == null) {
+                return null;
             }
             
-            if (!found) {
+            int count = snapshot.getRowCount();
+            String[] ids = snapshot.strings();
+            String[] barcodes = snapshot.strings();
+            String[] names = snapshot.strings();
+            String[] categories = snapshot.strings();
+            String[] descriptions = snapshot.strings();
+            double[] purchasePrices = snapshot.doubles();
+            double[] sellingPrices = snapshot.doubles();
+            int[] stock = snapshot.ints();
+            int[] minLevels = snapshot.ints();
+            int[] maxLevels = snapshot.ints();
+            String[] suppliers = snapshot.strings();
+            String[] locations = snapshot.strings();
+            LocalDate[] expiryDates = snapshot.dates();
+            boolean[] perishable = snapshot.booleans();
+            String[] units = snapshot.strings();
+            int[] sold = snapshot.ints();
+            LocalDate[] restocked = snapshot.dates();
+            String[] lots = snapshot.strings();
+            
+            List<Product> products = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Product product = new Product();
+                product.setProductId(ids[i]);
+                product.setBarcode(barcodes[i]);
+                product.setName(names[i]);
+                product.setCategory(categories[i]);
+                product.setDescription(descriptions[i]);
+                product.setPurchasePrice(purchasePrices[i]);
+                product.setSellingPrice(sellingPrices[i]);
+                product.setQuantityInStock(stock[i]);
+                product.setMinStockLevel(minLevels[i]);
+                product.setMaxStockLevel(maxLevels[i]);
+                product.setSupplierId(suppliers[i]);
+                product.setLocation(locations[i]);
+                product.setExpiryDate(expiryDates[i]);
+                product.setPerishable(perishable[i]);
+                product.setUnit(units[i]);
+                product.setQuantitySold(sold[i]);
+                product.setLastRestocked(restocked[i]);
+                product.setLots(StockLots.decode(lots[i]));
                 products.add(product);
             }
-            
-            saveAllProducts(products);
+            readAppendedRows(snapshot, PRODUCTS_FILE, row -> FileRecords.parseProductRow(row, 0), products);
+            return products;
             
         } catch (Exception e) {
-            throw new FileProcessingException("Failed to save product", e);
+            System.err.println("Ignoring unreadable product snapshot: " + e.getMessage());
+            return null;
         }
     }
     
-    public void saveAllProducts(List<Product> products) throws FileProcessingException {
+    // Rows appended to the CSV after the snapshot was written
+    private <T> void readAppendedRows(ColumnarSnapshot.Reader snapshot, String csvFile, 
+                                      Function<CSVRow, T> parser, List<T> rows) throws IOException {
+        CSVHandler.streamCSVFrom(csvFile, snapshot.getCoveredLength(), row -> {
+            T value = parser.apply(row);
+            if (value != null) {
+                rows.add(value);
+            }
+        });
+    }
+    
+    private void writeProductSnapshot(List<Product> products, String snapshotFile, String csvFile) {
         try {
-            List<String[]> rows = new ArrayList<>();
+            new ColumnarSnapshot.Writer<>(products)
+                .strings(Product::getProductId)
+                .strings(Product::getBarcode)
+                .strings(Product::getName)
+                .strings(Product::getCategory)
+                .strings(Product::getDescription)
+                .doubles(Product::getPurchasePrice)
+                .doubles(Product::getSellingPrice)
+                .ints(Product::getQuantityInStock)
+                .ints(Product::getMinStockLevel)
+                .ints(Product::getMaxStockLevel)
+                .strings(Product::getSupplierId)
+                .strings(Product::getLocation)
+                .dates(Product::getExpiryDate)
+                .booleans(Product::isPerishable)
+                .strings(Product::getUnit)
+                .ints(Product::getQuantitySold)
+                .dates(Product::getLastRestocked)
+                .strings(product -> product.getLots().encode())
+                .writeTo(snapshotFile, csvFile);
+        } catch (IOException e) {
+            System.err.println("Failed to write product snapshot: " + e.getMessage());
+        }
+    }
+    
+    public void compactProducts() throws FileProcessingException {
+        try {
+            JournalFile journal;
+            synchronized (productFileLock) {
+                journal = getProductJournal();
+            }
+            
+            compactTable(productFileLock, PRODUCTS_FILE, PRODUCTS_SNAPSHOT, PRODUCTS_JOURNAL, journal, null,
+                (csvFile, snapshotFile, coveredLength) -> {
+                    // Read only: the table's own snapshot is written under its lock
+                    List<Product> table = readProductSnapshot();
+                    if (table == null) {
+                        table = MappedCSVLoader.load(PRODUCTS_FILE, true, row -> FileRecords.parseProductRow(row, 0));
+                    }
+                    
+                    Map<String, Product> products = new LinkedHashMap<>();
+                    for (Product product : table) {
+                        products.put(product.getProductId(), product);
+                    }
+                    replaySetAside(PRODUCTS_JOURNAL, entry -> FileRecords.applyProductEntry(entry, products));
+                    
+                    writeProductTable(new ArrayList<>(products.values()), csvFile, snapshotFile);
+                });
             
-            // Header
-            rows.add(new String[]{
-                "ProductID", "Barcode", "Name", "Category", "Description",
-                "PurchasePrice", "SellingPrice", "QuantityInStock", "MinStockLevel",
-                "MaxStockLevel", "SupplierID", "Location", "ExpiryDate", 
-                "IsPerishable", "Unit", "QuantitySold", "LastRestocked"
+        } catch (IOException e) {
+            throw new FileProcessingException("Failed to compact products", e);
+        }
+    }
+    
+    private void compactProductsIfNeeded() throws IOException {
+        if (getProductJournal().getEntryCount() >= PRODUCT_JOURNAL_COMPACT_THRESHOLD) {
+            compactInBackground("products", () -> {
+                if (getProductJournal().getEntryCount() >= PRODUCT_JOURNAL_COMPACT_THRESHOLD) {
+                    compactProducts();
+                }
             });
+        }
+    }
+    
+    // Queues 'compaction' unless one is already waiting for this table. It
+    // runs after the appends queued ahead of it, so it checks the threshold
+    // again in case an earlier run already covered them.
+    private void compactInBackground(String table, Compaction compaction) {
+        if (!compactionsQueued.add(table)) {
+            return;
+        }
+        
+        COMPACTOR.execute(() -> {
+            compactionsQueued.remove(table);
+            try {
+                compaction.run();
+            } catch (FileProcessingException | IOException | RuntimeException e) {
+                // The journal is still replayed on load; the next append tries again
+                System.err.println("Failed to compact " + table + ": " + e.getMessage());
+            }
+        });
+    }
+    
+    private interface Compaction {
+        void run() throws FileProcessingException, IOException;
+    }
+    
+    // Rewrites a table's CSV with its journal folded in, without holding the
+    // table's lock while it does. Under the lock the journal is set aside as
+    // <journal>.compacting and appends carry on into a fresh one; a journal
+    // set aside by a compaction that didn't finish is folded in first instead.
+    // 'rewrite' then writes the new CSV and snapshot beside the old ones, and
+    // they are swapped in under the lock, after any rows appended to the old
+    // CSV meanwhile. Loads replay <journal>.compacting before the journal, and
+    // replaying it again over the rewritten CSV changes nothing.
+    private void compactTable(Object lock, String csvFile, String snapshotFile, String journalFile,
+                              JournalFile journal, JournalFile csvAppender, TableRewrite rewrite) 
+            throws IOException {
+        synchronized (compactionLock) {
+            Path setAside = Paths.get(journalFile + COMPACTING);
+            Path csv = Paths.get(csvFile);
+            Path compacted = Paths.get(csvFile + COMPACTED);
+            String compactedSnapshot = snapshotFile != null ? snapshotFile + COMPACTED : null;
+            
+            long coveredLength;
+            synchronized (lock) {
+                if (!Files.exists(setAside)) {
+                    journal.moveTo(setAside.toString());
+                }
+                coveredLength = Files.exists(csv) ? Files.size(csv) : 0;
+            }
             
-            // Data rows
-            for (Product product : products) {
-                String[] row = new String[17];
-                row[0] = product.getProductId();
-                row[1] = product.getBarcode();
-                row[2] = product.getName();
-                row[3] = product.getCategory();
-                row[4] = product.getDescription() != null ? product.getDescription() : "";
-                row[5] = String.format("%.2f", product.getPurchasePrice());
-                row[6] = String.format("%.2f", product.getSellingPrice());
-                row[7] = String.valueOf(product.getQuantityInStock());
-                row[8] = String.valueOf(product.getMinStockLevel());
-                row[9] = String.valueOf(product.getMaxStockLevel());
-                row[10] = product.getSupplierId() != null ? product.getSupplierId() : "";
-                row[11] = product.getLocation() != null ? product.getLocation() : "";
-                row[12] = product.getExpiryDate() != null ? 
-                    product.getExpiryDate().format(DATE_FORMATTER) : "";
-                row[13] = String.valueOf(product.isPerishable());
-                row[14] = product.getUnit() != null ? product.getUnit() : "";
-                row[15] = String.valueOf(product.getQuantitySold());
-                row[16] = product.getLastRestocked() != null ? 
-                    product.getLastRestocked().format(DATE_FORMATTER) : "";
-                
-                rows.add(row);
-            }
-            
-            CSVHandler.writeCSV(PRODUCTS_FILE, rows, false);
+            rewrite.write(compacted.toString(), compactedSnapshot, coveredLength);
             
-        } catch (IOException e) {
-            throw new FileProcessingException("Failed to save products", e);
+            synchronized (lock) {
+                // The appender's channel refers to the file being replaced
+                if (csvAppender != null) {
+                    csvAppender.close();
+                }
+                copyAppendedBytes(csv, coveredLength, compacted);
+                Files.move(compacted, csv, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (compactedSnapshot != null && Files.exists(Paths.get(compactedSnapshot))) {
+                    Files.move(Paths.get(compactedSnapshot), Paths.get(snapshotFile), 
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.deleteIfExists(setAside);
+            }
         }
     }
     
-    public void deleteProduct(String productId) throws FileProcessingException {
-        try {
-            List<Product> products = loadProducts();
-            products.removeIf(p -> p.getProductId().equals(productId));
-            saveAllProducts(products);
-        } catch (Exception e) {
-            throw new FileProcessingException("Failed to delete product", e);
+    // Writes a table's compacted CSV, and its snapshot when it has one, from
+    // its CSV's first 'coveredLength' bytes and its set-aside journal
+    private interface TableRewrite {
+        void write(String csvFile, String snapshotFile, long coveredLength) throws IOException;
+    }
+    
+    // Adds what was appended to 'source' from byte 'from' on to the end of 'target'
+    private static void copyAppendedBytes(Path source, long from, Path target) throws IOException {
+        if (!Files.exists(source) || Files.size(source) <= from) {
+            return;
+        }
+        
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = from;
+            long end = in.size();
+            while (position < end) {
+                position += in.transferTo(position, end - position, out);
+            }
+            out.force(false);
         }
     }
     
+    // Entries of a journal set aside by a compaction that hasn't swapped its rewrite in yet
+    private void replaySetAside(String journalFile, Consumer<CSVRow> handler) throws IOException {
+        new JournalFile(journalFile + COMPACTING).forEach(handler);
+    }
+    
+    private JournalFile getProductJournal() throws IOException {
+        if (productJournal == null) {
+            productJournal = new JournalFile(PRODUCTS_JOURNAL);
+        }
+        return productJournal;
+    }
+    
+    // Fields start at column 'first' so journal entries can share the mapping
+    private String[] toProductRow(Product product) {
+        String[] row = new String[18];
+        row[0] = product.getProductId();
+        row[1] = product.getBarcode();
+        row[2] = product.getName();
+        row[3] = product.getCategory();
+        row[4] = product.getDescription() != null ? product.getDescription() : "";
+        row[5] = String.format("%.2f", product.getPurchasePrice());
+        row[6] = String.format("%.2f", product.getSellingPrice());
+        row[7] = String.valueOf(product.getQuantityInStock());
+        row[8] = String.valueOf(product.getMinStockLevel());
+        row[9] = String.valueOf(product.getMaxStockLevel());
+        row[10] = product.getSupplierId() != null ? product.getSupplierId() : "";
+        row[11] = product.getLocation() != null ? product.getLocation() : "";
+        row[12] = product.getExpiryDate() != null ? 
+            product.getExpiryDate().format(DATE_FORMATTER) : "";
+        row[13] = String.valueOf(product.isPerishable());
+        row[14] = product.getUnit() != null ? product.getUnit() : "";
+        row[15] = String.valueOf(product.getQuantitySold());
+        row[16] = product.getLastRestocked() != null ? 
+            product.getLastRestocked().format(DATE_FORMATTER) : "";
+        row[17] = product.getLots().encode();
+        return row;
+    }
+    
     public void logStockMovement(String productId, String movementType, 
                                 int quantityChange, int newQuantity, String reference) 
             throws FileProcessingException {
@@ -232,9 +556,7 @@ public class FileDataService {
                 newQuantity,
                 reference);
             
-            Path logFile = Paths.get(MOVEMENT_LOG);
-            Files.writeString(logFile, logEntry + System.lineSeparator(), 
-                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            getActivityLog().append(MOVEMENT_LOG, logEntry);
             
         } catch (IOException e) {
             throw new FileProcessingException("Failed to log movement", e);
@@ -251,267 +573,697 @@ public class FileDataService {
                 product.getMinStockLevel(),
                 product.getCategory());
             
-            Path alertFile = Paths.get(LOW_STOCK_FILE);
-            Files.writeString(alertFile, alert + System.lineSeparator(), 
-                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            getActivityLog().append(LOW_STOCK_FILE, alert);
             
         } catch (IOException e) {
             throw new FileProcessingException("Failed to save alert", e);
         }
     }
     
+    // Movement and alert lines are written off the calling thread, in batches
+    private static synchronized GroupCommitLog getActivityLog() {
+        if (activityLog == null) {
+            activityLog = new GroupCommitLog(
+                AppConfig.getInt("log.queue.capacity", 10000),
+                AppConfig.getLong("log.commit.interval.ms", 5),
+                AppConfig.getBoolean("log.fsync", true));
+        }
+        return activityLog;
+    }
+    
     // Order operations
     public List<Order> loadOrders() throws FileProcessingException {
-        List<Order> orders = new ArrayList<>();
-        
-        try {
-            if (!Files.exists(Paths.get(ORDERS_FILE))) {
+        synchronized (orderFileLock) {
+            try {
+                List<Order> orders = readOrderSnapshot();
+                if (orders == null) {
+                    orders = MappedCSVLoader.load(ORDERS_FILE, true, FileRecords::parseOrderRow);
+                    writeOrderSnapshot(orders, ORDERS_SNAPSHOT, ORDERS_FILE);
+                }
+                attachOrderItems(orders);
+                applyOrderEvents(orders);
                 return orders;
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to load orders", e);
+            }
+        }
+    }
+    
+    private List<Order> readOrderSnapshot() {
+        try {
+            ColumnarSnapshot.Reader snapshot = ColumnarSnapshot.read(ORDERS_SNAPSHOT, ORDERS_FILE);
+            if (snapshot == null) {
+                return null;
             }
             
-            List<String[]> rows = CSVHandler.readCSV(ORDERS_FILE);
+            int count = snapshot.getRowCount();
+            String[] ids = snapshot.strings();
+            String[] customerIds = snapshot.strings();
+            LocalDateTime[] orderDates = snapshot.dateTimes();
+            double[] totals = snapshot.doubles();
+            double[] discounts = snapshot.doubles();
+            double[] taxes = snapshot.doubles();
+            double[] finalAmounts = snapshot.doubles();
+            String[] statuses = snapshot.strings();
+            String[] paymentMethods = snapshot.strings();
+            String[] notes = snapshot.strings();
+            LocalDateTime[] completionDates = snapshot.dateTimes();
             
-            for (int i = 1; i < rows.size(); i++) {
-                String[] row = rows.get(i);
-                if (row.length < 9) continue;
-                
-                try {
-                    Order order = new Order();
-                    order.setOrderId(row[0]);
-                    order.setCustomerId(row[1]);
-                    order.setOrderDate(LocalDateTime.parse(row[2], DATETIME_FORMATTER));
-                    order.setTotalAmount(Double.parseDouble(row[3]));
-                    order.setDiscount(Double.parseDouble(row[4]));
-                    order.setTax(Double.parseDouble(row[5]));
-                    order.setFinalAmount(Double.parseDouble(row[6]));
-                    order.setStatus(row[7]);
-                    order.setPaymentMethod(row[8]);
-                    
-                    if (row.length > 9 && !row[9].isEmpty()) {
-                        order.setNotes(row[9]);
-                    }
-                    if (row.length > 10 && !row[10].isEmpty()) {
-                        order.setCompletionDate(LocalDateTime.parse(row[10], DATETIME_FORMATTER));
-                    }
-                    
-                    orders.add(order);
-                } catch (Exception e) {
-                    System.err.println("Error parsing order row: " + String.join(",", row));
-                }
+            List<Order> orders = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Order order = new Order();
+                order.setOrderId(ids[i]);
+                order.setCustomerId(customerIds[i]);
+                order.setOrderDate(orderDates[i]);
+                order.restoreAmounts(totals[i], discounts[i], taxes[i], finalAmounts[i]);
+                order.setStatus(statuses[i]);
+                order.setPaymentMethod(paymentMethods[i]);
+                order.setNotes(notes[i]);
+                order.setCompletionDate(completionDates[i]);
+                orders.add(order);
             }
+            readAppendedRows(snapshot, ORDERS_FILE, FileRecords::parseOrderRow, orders);
+            return orders;
             
+        } catch (Exception e) {
+            System.err.println("Ignoring unreadable order snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+    
+    private void writeOrderSnapshot(List<Order> orders, String snapshotFile, String csvFile) {
+        try {
+            new ColumnarSnapshot.Writer<>(orders)
+                .strings(Order::getOrderId)
+                .strings(Order::getCustomerId)
+                .dateTimes(Order::getOrderDate)
+                .doubles(Order::getTotalAmount)
+                .doubles(Order::getDiscount)
+                .doubles(Order::getTax)
+                .doubles(Order::getFinalAmount)
+                .strings(Order::getStatus)
+                .strings(Order::getPaymentMethod)
+                .strings(Order::getNotes)
+                .dateTimes(Order::getCompletionDate)
+                .writeTo(snapshotFile, csvFile);
         } catch (IOException e) {
-            throw new FileProcessingException("Failed to load orders", e);
+            System.err.println("Failed to write order snapshot: " + e.getMessage());
         }
-        
-        return orders;
     }
     
     public void saveOrder(Order order) throws FileProcessingException {
+        synchronized (orderFileLock) {
+            try {
+                // Items first, so an order row never exists without its items
+                long itemsLength = getOrderItemsFile().length();
+                saveOrderItems(order);
+                appendOrderRows(Collections.singletonList(toOrderRow(order)), itemsLength);
+                
+            } catch (Exception e) {
+                throw new FileProcessingException("Failed to save order", e);
+            }
+        }
+    }
+    
+    // One append to the items file and one to orders.csv for the whole batch
+    public void saveOrders(List<Order> orders) throws FileProcessingException {
+        synchronized (orderFileLock) {
+            try {
+                List<String[]> itemRows = new ArrayList<>();
+                List<String[]> orderRows = new ArrayList<>(orders.size());
+                for (Order order : orders) {
+                    addOrderItemRows(itemRows, order);
+                    orderRows.add(toOrderRow(order));
+                }
+                
+                // Items first, so an order row never exists without its items
+                long itemsLength = getOrderItemsFile().length();
+                getOrderItemsFile().append(itemRows);
+                appendOrderRows(orderRows, itemsLength);
+                
+            } catch (Exception e) {
+                throw new FileProcessingException("Failed to save orders", e);
+            }
+        }
+    }
+    
+    // If the order rows can't be written, the item rows just appended are cut
+    // back off, so a retry doesn't leave the same items in the file twice
+    private void appendOrderRows(List<String[]> orderRows, long itemsLength) throws IOException {
         try {
-            List<Order> orders = loadOrders();
-            orders.add(order);
-            saveAllOrders(orders);
-            
-            // Save order items
-            saveOrderItems(order);
-            
-        } catch (Exception e) {
-            throw new FileProcessingException("Failed to save order", e);
+            getOrderAppender().append(orderRows);
+        } catch (IOException e) {
+            try {
+                getOrderItemsFile().truncate(itemsLength);
+            } catch (IOException truncateError) {
+                e.addSuppressed(truncateError);
+            }
+            throw e;
         }
     }
     
+    // Only the status and completion date change after an order is placed;
+    // they are journaled and folded into orders.csv on compaction
     public void updateOrder(Order order) throws FileProcessingException {
-        try {
-            List<Order> orders = loadOrders();
-            for (int i = 0; i < orders.size(); i++) {
-                if (orders.get(i).getOrderId().equals(order.getOrderId())) {
-                    orders.set(i, order);
-                    break;
+        synchronized (orderFileLock) {
+            try {
+                getOrderEventJournal().append(new String[]{
+                    order.getOrderId(),
+                    order.getStatus(),
+                    order.getCompletionDate() != null ? 
+                        order.getCompletionDate().format(DATETIME_FORMATTER) : ""
+                });
+                
+                if (getOrderEventJournal().getEntryCount() >= ORDER_EVENTS_COMPACT_THRESHOLD) {
+                    compactInBackground("orders", () -> {
+                        if (getOrderEventJournal().getEntryCount() >= ORDER_EVENTS_COMPACT_THRESHOLD) {
+                            compactOrders();
+                        }
+                    });
                 }
+                
+            } catch (Exception e) {
+                throw new FileProcessingException("Failed to update order", e);
             }
-            saveAllOrders(orders);
-            
-        } catch (Exception e) {
-            throw new FileProcessingException("Failed to update order", e);
         }
     }
     
-    private void saveAllOrders(List<Order> orders) throws FileProcessingException {
+    // Orders placed while it runs are appended to orders.csv as usual and
+    // carried over onto the rewritten file when it is swapped in
+    public void compactOrders() throws FileProcessingException {
         try {
-            List<String[]> rows = new ArrayList<>();
-            
-            // Header
-            rows.add(new String[]{
-                "OrderID", "CustomerID", "OrderDate", "TotalAmount", "Discount",
-                "Tax", "FinalAmount", "Status", "PaymentMethod", "Notes", "CompletionDate"
-            });
-            
-            // Data rows
-            for (Order order : orders) {
-                String[] row = new String[11];
-                row[0] = order.getOrderId();
-                row[1] = order.getCustomerId();
-                row[2] = order.getOrderDate().format(DATETIME_FORMATTER);
-                row[3] = String.format("%.2f", order.getTotalAmount());
-                row[4] = String.format("%.2f", order.getDiscount());
-                row[5] = String.format("%.2f", order.getTax());
-                row[6] = String.format("%.2f", order.getFinalAmount());
-                row[7] = order.getStatus();
-                row[8] = order.getPaymentMethod();
-                row[9] = order.getNotes() != null ? order.getNotes() : "";
-                row[10] = order.getCompletionDate() != null ? 
-                    order.getCompletionDate().format(DATETIME_FORMATTER) : "";
-                
-                rows.add(row);
+            JournalFile journal;
+            JournalFile appender;
+            synchronized (orderFileLock) {
+                journal = getOrderEventJournal();
+                appender = getOrderAppender();
             }
             
-            CSVHandler.writeCSV(ORDERS_FILE, rows, false);
+            compactTable(orderFileLock, ORDERS_FILE, ORDERS_SNAPSHOT, ORDER_EVENTS_JOURNAL, journal, appender,
+                (csvFile, snapshotFile, coveredLength) -> {
+                    List<Order> orders = new ArrayList<>();
+                    CSVHandler.streamCSVTo(ORDERS_FILE, coveredLength, true, row -> {
+                        Order order = FileRecords.parseOrderRow(row);
+                        if (order != null) {
+                            orders.add(order);
+                        }
+                    });
+                    
+                    Map<String, Order> byId = new HashMap<>();
+                    for (Order order : orders) {
+                        byId.put(order.getOrderId(), order);
+                    }
+                    replaySetAside(ORDER_EVENTS_JOURNAL, event -> FileRecords.applyOrderEvent(event, byId));
+                    
+                    writeOrderTable(orders, csvFile, snapshotFile);
+                });
             
         } catch (IOException e) {
-            throw new FileProcessingException("Failed to save orders", e);
+            throw new FileProcessingException("Failed to compact orders", e);
+        }
+    }
+    
+    private void applyOrderEvents(List<Order> orders) throws IOException {
+        if (getOrderEventJournal().getEntryCount() == 0 
+                && !Files.exists(Paths.get(ORDER_EVENTS_JOURNAL + COMPACTING))) {
+            return;
+        }
+        
+        Map<String, Order> byId = new HashMap<>();
+        for (Order order : orders) {
+            byId.put(order.getOrderId(), order);
+        }
+        
+        replaySetAside(ORDER_EVENTS_JOURNAL, event -> FileRecords.applyOrderEvent(event, byId));
+        getOrderEventJournal().forEach(event -> FileRecords.applyOrderEvent(event, byId));
+    }
+    
+    private JournalFile getOrderAppender() throws IOException {
+        if (orderAppender == null) {
+            Path ordersFile = Paths.get(ORDERS_FILE);
+            // Started with a checksum footer, so snapshots can tell rows
+            // appended later from an edit to the rows before them
+            if (!Files.exists(ordersFile) || Files.size(ordersFile) == 0) {
+                CSVHandler.writeChecksummedCSV(ORDERS_FILE, Collections.singletonList(ORDER_HEADER));
+            }
+            orderAppender = new JournalFile(ORDERS_FILE, false);
+        }
+        return orderAppender;
+    }
+    
+    private JournalFile getOrderEventJournal() throws IOException {
+        if (orderEventJournal == null) {
+            orderEventJournal = new JournalFile(ORDER_EVENTS_JOURNAL);
         }
+        return orderEventJournal;
     }
     
+    private void writeOrderTable(List<Order> orders, String csvFile, String snapshotFile) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(ORDER_HEADER);
+        
+        for (Order order : orders) {
+            rows.add(toOrderRow(order));
+        }
+        
+        CSVHandler.writeChecksummedCSV(csvFile, rows);
+        writeOrderSnapshot(orders, snapshotFile, csvFile);
+    }
+    
+    private String[] toOrderRow(Order order) {
+        String[] row = new String[11];
+        row[0] = order.getOrderId();
+        row[1] = order.getCustomerId();
+        row[2] = order.getOrderDate().format(DATETIME_FORMATTER);
+        row[3] = String.format("%.2f", order.getTotalAmount());
+        row[4] = String.format("%.2f", order.getDiscount());
+        row[5] = String.format("%.2f", order.getTax());
+        row[6] = String.format("%.2f", order.getFinalAmount());
+        row[7] = order.getStatus();
+        row[8] = order.getPaymentMethod();
+        row[9] = order.getNotes() != null ? order.getNotes() : "";
+        row[10] = order.getCompletionDate() != null ? 
+            order.getCompletionDate().format(DATETIME_FORMATTER) : "";
+        return row;
+    }
+    
+    // All order items live in one append-only file, one row per item keyed by order id
     private void saveOrderItems(Order order) throws FileProcessingException {
         try {
-            String itemsFile = ORDERS_DIR + "items_" + order.getOrderId() + ".csv";
             List<String[]> rows = new ArrayList<>();
+            addOrderItemRows(rows, order);
             
-            // Header
-            rows.add(new String[]{
-                "OrderID", "ProductID", "ProductName", "Price", "Quantity", "Discount"
-            });
-            
-            // Data rows
-            for (OrderItem item : order.getItems()) {
-                String[] row = new String[6];
-                row[0] = order.getOrderId();
-                row[1] = item.getProductId();
-                row[2] = item.getProductName();
-                row[3] = String.format("%.2f", item.getPrice());
-                row[4] = String.valueOf(item.getQuantity());
-                row[5] = String.format("%.2f", item.getDiscount());
-                
-                rows.add(row);
-            }
-            
-            CSVHandler.writeCSV(itemsFile, rows, false);
+            getOrderItemsFile().append(rows);
             
         } catch (IOException e) {
             throw new FileProcessingException("Failed to save order items", e);
         }
     }
     
-    // Customer operations
-    public List<Customer> loadCustomers() throws FileProcessingException {
-        List<Customer> customers = new ArrayList<>();
+    private void attachOrderItems(List<Order> orders) throws IOException {
+        FileRecords.OrderItems items = new FileRecords.OrderItems();
+        getOrderItemsFile().forEach(items);
+        items.attachTo(orders);
+    }
+    
+    private JournalFile getOrderItemsFile() throws IOException {
+        if (orderItemsFile == null) {
+            boolean exists = Files.exists(Paths.get(ORDER_ITEMS_FILE));
+            orderItemsFile = new JournalFile(ORDER_ITEMS_FILE, false);
+            if (!exists) {
+                migrateLegacyOrderItems(orderItemsFile);
+            }
+        }
+        return orderItemsFile;
+    }
+    
+    // Folds the old per-order items_<orderId>.csv files into the consolidated file
+    private void migrateLegacyOrderItems(JournalFile target) throws IOException {
+        List<Path> legacyFiles = new ArrayList<>();
+        try (DirectoryStream<Path> stream = 
+                Files.newDirectoryStream(Paths.get(ORDERS_DIR), "items_*.csv")) {
+            for (Path file : stream) {
+                legacyFiles.add(file);
+            }
+        }
         
-        try {
-            if (!Files.exists(Paths.get(CUSTOMERS_FILE))) {
-                return customers;
+        if (legacyFiles.isEmpty()) {
+            return;
+        }
+        
+        List<String[]> rows = new ArrayList<>();
+        for (Path file : legacyFiles) {
+            CSVHandler.streamCSV(file.toString(), true, row -> {
+                if (row.size() >= 6) {
+                    rows.add(row.toArray());
+                }
+            });
+        }
+        target.append(rows);
+        
+        for (Path file : legacyFiles) {
+            Files.deleteIfExists(file);
+        }
+        System.out.println("Migrated " + legacyFiles.size() + " order item files into " + ORDER_ITEMS_FILE);
+    }
+    
+    private void addOrderItemRows(List<String[]> rows, Order order) {
+        int line = 0;
+        for (OrderItem item : order.getItems()) {
+            rows.add(toOrderItemRow(order.getOrderId(), line++, item));
+        }
+    }
+    
+    private String[] toOrderItemRow(String orderId, int line, OrderItem item) {
+        return new String[]{
+            orderId,
+            item.getProductId(),
+            item.getProductName(),
+            String.format("%.2f", item.getPrice()),
+            String.valueOf(item.getQuantity()),
+            String.format("%.2f", item.getDiscount()),
+            String.valueOf(line),
+            item.getCategory() != null ? item.getCategory() : ""
+        };
+    }
+    
+    // Sales rollups: daily_rollups.csv plus a journal of changed rows, each
+    // holding the row's new values so replaying it over the CSV is safe
+    public List<SalesRollups.Row> loadSalesRollups() throws FileProcessingException {
+        synchronized (rollupFileLock) {
+            try {
+                Map<String, SalesRollups.Row> rows = new LinkedHashMap<>();
+                CSVHandler.streamCSV(ROLLUPS_FILE, true, row -> putRollup(rows, row));
+                replaySetAside(ROLLUPS_JOURNAL, row -> putRollup(rows, row));
+                getRollupJournal().forEach(row -> putRollup(rows, row));
+                return new ArrayList<>(rows.values());
+                
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to load sales rollups", e);
             }
-            
-            List<String[]> rows = CSVHandler.readCSV(CUSTOMERS_FILE);
-            
-            for (int i = 1; i < rows.size(); i++) {
-                String[] row = rows.get(i);
-                if (row.length < 8) continue;
+        }
+    }
+    
+    public void saveSalesRollups(List<SalesRollups.Row> rows) throws FileProcessingException {
+        synchronized (rollupFileLock) {
+            try {
+                List<String[]> entries = new ArrayList<>(rows.size());
+                for (SalesRollups.Row row : rows) {
+                    entries.add(toRollupRow(row));
+                }
+                getRollupJournal().append(entries);
+                
+                if (getRollupJournal().getEntryCount() >= ROLLUPS_JOURNAL_COMPACT_THRESHOLD) {
+                    compactInBackground("sales rollups", () -> {
+                        if (getRollupJournal().getEntryCount() >= ROLLUPS_JOURNAL_COMPACT_THRESHOLD) {
+                            compactSalesRollups();
+                        }
+                    });
+                }
                 
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to save sales rollups", e);
+            }
+        }
+    }
+    
+    public void saveAllSalesRollups(List<SalesRollups.Row> rows) throws FileProcessingException {
+        synchronized (compactionLock) {
+            synchronized (rollupFileLock) {
                 try {
-                    Customer customer = new Customer();
-                    customer.setCustomerId(row[0]);
-                    customer.setFirstName(row[1]);
-                    customer.setLastName(row[2]);
-                    customer.setEmail(row[3]);
-                    customer.setPhone(row[4]);
-                    customer.setAddress(row[5]);
-                    customer.setJoinDate(LocalDate.parse(row[6], DATE_FORMATTER));
-                    customer.setTotalPurchases(Double.parseDouble(row[7]));
-                    
-                    if (row.length > 8 && !row[8].isEmpty()) {
-                        customer.setLoyaltyPoints(Integer.parseInt(row[8]));
-                    }
-                    if (row.length > 9 && !row[9].isEmpty()) {
-                        customer.setCustomerType(row[9]);
-                    }
-                    if (row.length > 10 && !row[10].isEmpty()) {
-                        customer.setLastPurchase(LocalDateTime.parse(row[10], DATETIME_FORMATTER));
-                    }
+                    writeRollupTable(rows, ROLLUPS_FILE);
+                    getRollupJournal().truncate();
+                    Files.deleteIfExists(Paths.get(ROLLUPS_JOURNAL + COMPACTING));
                     
-                    customers.add(customer);
-                } catch (Exception e) {
-                    System.err.println("Error parsing customer row: " + String.join(",", row));
+                } catch (IOException e) {
+                    throw new FileProcessingException("Failed to save sales rollups", e);
                 }
             }
+        }
+    }
+    
+    public void compactSalesRollups() throws FileProcessingException {
+        try {
+            JournalFile journal;
+            synchronized (rollupFileLock) {
+                journal = getRollupJournal();
+            }
+            
+            compactTable(rollupFileLock, ROLLUPS_FILE, null, ROLLUPS_JOURNAL, journal, null,
+                (csvFile, snapshotFile, coveredLength) -> {
+                    Map<String, SalesRollups.Row> rows = new LinkedHashMap<>();
+                    CSVHandler.streamCSV(ROLLUPS_FILE, true, row -> putRollup(rows, row));
+                    replaySetAside(ROLLUPS_JOURNAL, row -> putRollup(rows, row));
+                    writeRollupTable(new ArrayList<>(rows.values()), csvFile);
+                });
             
         } catch (IOException e) {
-            throw new FileProcessingException("Failed to load customers", e);
+            throw new FileProcessingException("Failed to compact sales rollups", e);
+        }
+    }
+    
+    private void writeRollupTable(List<SalesRollups.Row> rows, String csvFile) throws IOException {
+        List<String[]> lines = new ArrayList<>(rows.size() + 1);
+        lines.add(ROLLUP_HEADER);
+        for (SalesRollups.Row row : rows) {
+            lines.add(toRollupRow(row));
         }
         
-        return customers;
+        CSVHandler.writeChecksummedCSV(csvFile, lines);
     }
     
-    public void saveCustomer(Customer customer) throws FileProcessingException {
+    // Later rows replace earlier ones for the same day, dimension and key
+    private void putRollup(Map<String, SalesRollups.Row> rows, CSVRow row) {
+        SalesRollups.Row rollup = parseRollupRow(row);
+        if (rollup != null) {
+            rows.put(rollup.getDate() + "," + rollup.getDimension() + "," + rollup.getKey(), rollup);
+        }
+    }
+    
+    private JournalFile getRollupJournal() throws IOException {
+        if (rollupJournal == null) {
+            rollupJournal = new JournalFile(ROLLUPS_JOURNAL);
+        }
+        return rollupJournal;
+    }
+    
+    private String[] toRollupRow(SalesRollups.Row row) {
+        SalesRollups.Totals totals = row.getTotals();
+        return new String[]{
+            row.getDate().toString(),
+            row.getDimension(),
+            row.getKey(),
+            String.valueOf(totals.getRevenue()),
+            String.valueOf(totals.getItems()),
+            String.valueOf(totals.getTransactions()),
+            String.valueOf(totals.getTax()),
+            String.valueOf(totals.getDiscount())
+        };
+    }
+    
+    private SalesRollups.Row parseRollupRow(CSVRow row) {
+        if (row.size() < ROLLUP_HEADER.length) return null;
+        
         try {
-            List<Customer> customers = loadCustomers();
-            boolean found = false;
-            
-            for (int i = 0; i < customers.size(); i++) {
-                if (customers.get(i).getCustomerId().equals(customer.getCustomerId())) {
-                    customers.set(i, customer);
-                    found = true;
-                    break;
+            SalesRollups.Totals totals = new SalesRollups.Totals(row.getDouble(3), row.getInt(4),
+                row.getInt(5), row.getDouble(6), row.getDouble(7));
+            return new SalesRollups.Row(LocalDate.parse(row.get(0)), row.get(1), row.get(2), totals);
+        } catch (Exception e) {
+            System.err.println("Error parsing sales rollup row: " + row);
+            return null;
+        }
+    }
+    
+    // Customer operations
+    public List<Customer> loadCustomers() throws FileProcessingException {
+        synchronized (customerFileLock) {
+            try {
+                List<Customer> table = readCustomerSnapshot();
+                if (table == null) {
+                    table = MappedCSVLoader.load(CUSTOMERS_FILE, true, row -> FileRecords.parseCustomerRow(row, 0));
+                    writeCustomerSnapshot(table, CUSTOMERS_SNAPSHOT, CUSTOMERS_FILE);
+                }
+                
+                Map<String, Customer> customers = new LinkedHashMap<>();
+                for (Customer customer : table) {
+                    customers.put(customer.getCustomerId(), customer);
                 }
+                
+                // Replay changes recorded since the last compaction
+                replaySetAside(CUSTOMERS_JOURNAL, entry -> FileRecords.applyCustomerEntry(entry, customers));
+                getCustomerJournal().forEach(entry -> FileRecords.applyCustomerEntry(entry, customers));
+                return new ArrayList<>(customers.values());
+            } catch (IOException e) {
+                throw new FileProcessingException("Failed to load customers", e);
+            }
+        }
+    }
+    
+    private List<Customer> readCustomerSnapshot() {
+        try {
+            ColumnarSnapshot.Reader snapshot = ColumnarSnapshot.read(CUSTOMERS_SNAPSHOT, CUSTOMERS_FILE);
+            if (snapshot == null) {
+                return null;
             }
             
-            if (!found) {
+            int count = snapshot.getRowCount();
+            String[] ids = snapshot.strings();
+            String[] firstNames = snapshot.strings();
+            String[] lastNames = snapshot.strings();
+            String[] emails = snapshot.strings();
+            String[] phones = snapshot.strings();
+            String[] addresses = snapshot.strings();
+            LocalDate[] joinDates = snapshot.dates();
+            double[] totalPurchases = snapshot.doubles();
+            int[] loyaltyPoints = snapshot.ints();
+            String[] customerTypes = snapshot.strings();
+            LocalDateTime[] lastPurchases = snapshot.dateTimes();
+            
+            List<Customer> customers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Customer customer = new Customer();
+                customer.setCustomerId(ids[i]);
+                customer.setFirstName(firstNames[i]);
+                customer.setLastName(lastNames[i]);
+                customer.setEmail(emails[i]);
+                customer.setPhone(phones[i]);
+                customer.setAddress(addresses[i]);
+                customer.setJoinDate(joinDates[i]);
+                customer.setTotalPurchases(totalPurchases[i]);
+                customer.setLoyaltyPoints(loyaltyPoints[i]);
+                customer.setCustomerType(customerTypes[i]);
+                customer.setLastPurchase(lastPurchases[i]);
                 customers.add(customer);
             }
-            
-            saveAllCustomers(customers);
+            readAppendedRows(snapshot, CUSTOMERS_FILE, row -> FileRecords.parseCustomerRow(row, 0), customers);
+            return customers;
             
         } catch (Exception e) {
-            throw new FileProcessingException("Failed to save customer", e);
+            System.err.println("Ignoring unreadable customer snapshot: " + e.getMessage());
+            return null;
         }
     }
     
-    private void saveAllCustomers(List<Customer> customers) throws FileProcessingException {
+    private void writeCustomerSnapshot(List<Customer> customers, String snapshotFile, String csvFile) {
         try {
-            List<String[]> rows = new ArrayList<>();
-            
-            // Header
-            rows.add(new String[]{
-                "CustomerID", "FirstName", "LastName", "Email", "Phone", "Address",
-                "JoinDate", "TotalPurchases", "LoyaltyPoints", "CustomerType", "LastPurchase"
-            });
-            
-            // Data rows
-            for (Customer customer : customers) {
-                String[] row = new String[11];
-                row[0] = customer.getCustomerId();
-                row[1] = customer.getFirstName();
-                row[2] = customer.getLastName();
-                row[3] = customer.getEmail();
-                row[4] = customer.getPhone();
-                row[5] = customer.getAddress() != null ? customer.getAddress() : "";
-                row[6] = customer.getJoinDate().format(DATE_FORMATTER);
-                row[7] = String.format("%.2f", customer.getTotalPurchases());
-                row[8] = String.valueOf(customer.getLoyaltyPoints());
-                row[9] = customer.getCustomerType();
-                row[10] = customer.getLastPurchase() != null ? 
-                    customer.getLastPurchase().format(DATETIME_FORMATTER) : "";
+            new ColumnarSnapshot.Writer<>(customers)
+                .strings(Customer::getCustomerId)
+                .strings(Customer::getFirstName)
+                .strings(Customer::getLastName)
+                .strings(Customer::getEmail)
+                .strings(Customer::getPhone)
+                .strings(Customer::getAddress)
+                .dates(Customer::getJoinDate)
+                .doubles(Customer::getTotalPurchases)
+                .ints(Customer::getLoyaltyPoints)
+                .strings(Customer::getCustomerType)
+                .dateTimes(Customer::getLastPurchase)
+                .writeTo(snapshotFile, csvFile);
+        } catch (IOException e) {
+            System.err.println("Failed to write customer snapshot: " + e.getMessage());
+        }
+    }
+    
+    public void saveCustomer(Customer customer) throws FileProcessingException {
+        synchronized (customerFileLock) {
+            try {
+                getCustomerJournal().append(toCustomerEntry(customer));
+                compactCustomersIfNeeded();
                 
-                rows.add(row);
+            } catch (Exception e) {
+                throw new FileProcessingException("Failed to save customer", e);
+            }
+        }
+    }
+    
+    public void saveCustomers(List<Customer> changed) throws FileProcessingException {
+        synchronized (customerFileLock) {
+            try {
+                List<String[]> entries = new ArrayList<>(changed.size());
+                for (Customer customer : changed) {
+                    entries.add(toCustomerEntry(customer));
+                }
+                
+                getCustomerJournal().append(entries);
+                compactCustomersIfNeeded();
+                
+            } catch (Exception e) {
+                throw new FileProcessingException("Failed to save customers", e);
+            }
+        }
+    }
+    
+    public void compactCustomers() throws FileProcessingException {
+        try {
+            JournalFile journal;
+            synchronized (customerFileLock) {
+                journal = getCustomerJournal();
             }
             
-            CSVHandler.writeCSV(CUSTOMERS_FILE, rows, false);
+            compactTable(customerFileLock, CUSTOMERS_FILE, CUSTOMERS_SNAPSHOT, CUSTOMERS_JOURNAL, journal, null,
+                (csvFile, snapshotFile, coveredLength) -> {
+                    // Read only: the table's own snapshot is written under its lock
+                    List<Customer> table = readCustomerSnapshot();
+                    if (table == null) {
+                        table = MappedCSVLoader.load(CUSTOMERS_FILE, true, row -> FileRecords.parseCustomerRow(row, 0));
+                    }
+                    
+                    Map<String, Customer> customers = new LinkedHashMap<>();
+                    for (Customer customer : table) {
+                        customers.put(customer.getCustomerId(), customer);
+                    }
+                    replaySetAside(CUSTOMERS_JOURNAL, entry -> FileRecords.applyCustomerEntry(entry, customers));
+                    
+                    writeCustomerTable(new ArrayList<>(customers.values()), csvFile, snapshotFile);
+                });
             
         } catch (IOException e) {
-            throw new FileProcessingException("Failed to save customers", e);
+            throw new FileProcessingException("Failed to compact customers", e);
         }
     }
     
+    private void compactCustomersIfNeeded() throws IOException {
+        if (getCustomerJournal().getEntryCount() >= CUSTOMER_JOURNAL_COMPACT_THRESHOLD) {
+            compactInBackground("customers", () -> {
+                if (getCustomerJournal().getEntryCount() >= CUSTOMER_JOURNAL_COMPACT_THRESHOLD) {
+                    compactCustomers();
+                }
+            });
+        }
+    }
+    
+    private JournalFile getCustomerJournal() throws IOException {
+        if (customerJournal == null) {
+            customerJournal = new JournalFile(CUSTOMERS_JOURNAL);
+        }
+        return customerJournal;
+    }
+    
+    private void writeCustomerTable(List<Customer> customers, String csvFile, String snapshotFile) 
+            throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        
+        // Header
+        rows.add(new String[]{
+            "CustomerID", "FirstName", "LastName", "Email", "Phone", "Address",
+            "JoinDate", "TotalPurchases", "LoyaltyPoints", "CustomerType", "LastPurchase"
+        });
+        
+        // Data rows
+        for (Customer customer : customers) {
+            rows.add(toCustomerRow(customer));
+        }
+        
+        CSVHandler.writeChecksummedCSV(csvFile, rows);
+        writeCustomerSnapshot(customers, snapshotFile, csvFile);
+    }
+    
+    // A customers journal entry: the customer's whole row after an UPSERT marker
+    private String[] toCustomerEntry(Customer customer) {
+        String[] row = toCustomerRow(customer);
+        String[] entry = new String[row.length + 1];
+        entry[0] = FileRecords.JOURNAL_UPSERT;
+        System.arraycopy(row, 0, entry, 1, row.length);
+        return entry;
+    }
+    
+    private String[] toCustomerRow(Customer customer) {
+        String[] row = new String[11];
+        row[0] = customer.getCustomerId();
+        row[1] = customer.getFirstName();
+        row[2] = customer.getLastName();
+        row[3] = customer.getEmail();
+        row[4] = customer.getPhone();
+        row[5] = customer.getAddress() != null ? customer.getAddress() : "";
+        row[6] = customer.getJoinDate().format(DATE_FORMATTER);
+        row[7] = String.format("%.2f", customer.getTotalPurchases());
+        row[8] = String.valueOf(customer.getLoyaltyPoints());
+        row[9] = customer.getCustomerType();
+        row[10] = customer.getLastPurchase() != null ? 
+            customer.getLastPurchase().format(DATETIME_FORMATTER) : "";
+        return row;
+    }
+    
     // Backup operations
     public void createBackup() throws FileProcessingException {
         try {
@@ -520,16 +1272,27 @@ public class FileDataService {
             String backupDir = BACKUP_DIR + "backup_" + timestamp + "/";
             Files.createDirectories(Paths.get(backupDir));
             
+            // Fold the journals in so the backup is self-contained
+            compactProducts();
+            compactOrders();
+            compactCustomers();
+            compactSalesRollups();
+            
             // Copy all important files
-            copyFileToBackup(PRODUCTS_FILE, backupDir);
-            copyFileToBackup(ORDERS_FILE, backupDir);
-            copyFileToBackup(CUSTOMERS_FILE, backupDir);
-            copyFileToBackup(SUPPLIERS_FILE, backupDir);
-            copyFileToBackup(USERS_FILE, backupDir);
+            String[] files = {
+                PRODUCTS_FILE, ORDERS_FILE, ORDER_ITEMS_FILE, CUSTOMERS_FILE,
+                SUPPLIERS_FILE, USERS_FILE, ROLLUPS_FILE
+            };
+            int copied = 0;
+            for (String file : files) {
+                if (copyFileToBackup(file, backupDir)) {
+                    copied++;
+                }
+            }
             
             // Create backup info file
             String info = "Backup created: " + LocalDateTime.now() + "\n" +
-                         "Files backed up: 5\n" +
+                         "Files backed up: " + copied + "\n" +
                          "System: RetailInventoryPro v2.0.0\n";
             
             Files.writeString(Paths.get(backupDir + "backup_info.txt"), info);
@@ -541,13 +1304,15 @@ public class FileDataService {
         }
     }
     
-    private void copyFileToBackup(String sourceFile, String backupDir) throws IOException {
+    private boolean copyFileToBackup(String sourceFile, String backupDir) throws IOException {
         Path source = Paths.get(sourceFile);
-        if (Files.exists(source)) {
-            String fileName = source.getFileName().toString();
-            Path target = Paths.get(backupDir + fileName);
-            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        if (!Files.exists(source)) {
+            return false;
         }
+        String fileName = source.getFileName().toString();
+        Path target = Paths.get(backupDir + fileName);
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        return true;
     }
     
     // Report generation
@@ -636,7 +1401,7 @@ public class FileDataService {
                     today.minusDays(15).format(DATE_FORMATTER)
                 });
                 
-                CSVHandler.writeCSV(PRODUCTS_FILE, sampleProducts, false);
+                CSVHandler.writeChecksummedCSV(PRODUCTS_FILE, sampleProducts);
                 
                 // Create sample customers
                 List<String[]> sampleCustomers = new ArrayList<>();
@@ -657,7 +1422,7 @@ public class FileDataService {
                     "450.75", "45", "Regular", today.minusDays(5).format(DATETIME_FORMATTER)
                 });
                 
-                CSVHandler.writeCSV(CUSTOMERS_FILE, sampleCustomers, false);
+                CSVHandler.writeChecksummedCSV(CUSTOMERS_FILE, sampleCustomers);
                 
                 // Create sample users
                 List<String[]> sampleUsers = new ArrayList<>();
@@ -690,7 +1455,7 @@ public class FileDataService {
                     "true", "Sales", "30000.00"
                 });
                 
-                CSVHandler.writeCSV(USERS_FILE, sampleUsers, false);
+                CSVHandler.writeChecksummedCSV(USERS_FILE, sampleUsers);
                 
                 System.out.println("Sample data created successfully.");
             }
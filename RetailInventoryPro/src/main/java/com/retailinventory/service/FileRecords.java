@@ -0,0 +1,224 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Product;
+import com.retailinventory.model.StockLots;
+import com.retailinventory.model.Order;
+import com.retailinventory.model.OrderItem;
+import com.retailinventory.model.Customer;
+import com.retailinventory.util.CSVRow;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.function.Consumer;
+
+// How rows of the CSV data files and their journals read back into model
+// objects. Shared by FileDataService and CSVImport, so neither the format nor
+// the replay rules exist twice.
+final class FileRecords {
+    static final String JOURNAL_UPSERT = "UPSERT";
+    static final String JOURNAL_DELETE = "DELETE";
+    
+    private static final DateTimeFormatter DATE_FORMATTER = 
+        DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter DATETIME_FORMATTER = 
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private FileRecords() {}
+    
+    // One products journal entry: an upserted product row or a deleted ID
+    static void applyProductEntry(CSVRow entry, Map<String, Product> products) {
+        if (entry.size() < 2) return;
+        
+        String op = entry.get(0);
+        if (op.equals(JOURNAL_DELETE)) {
+            products.remove(entry.get(1));
+        } else if (op.equals(JOURNAL_UPSERT)) {
+            Product product = parseProductRow(entry, 1);
+            if (product != null) {
+                products.put(product.getProductId(), product);
+            }
+        }
+    }
+    
+    // One customers journal entry: an upserted customer row
+    static void applyCustomerEntry(CSVRow entry, Map<String, Customer> customers) {
+        if (entry.size() < 2 || !entry.get(0).equals(JOURNAL_UPSERT)) return;
+        
+        Customer customer = parseCustomerRow(entry, 1);
+        if (customer != null) {
+            customers.put(customer.getCustomerId(), customer);
+        }
+    }
+    
+    // One order event: the order's new status and completion date
+    static void applyOrderEvent(CSVRow event, Map<String, Order> ordersById) {
+        if (event.size() < 3) return;
+        
+        Order order = ordersById.get(event.get(0));
+        if (order == null) return;
+        
+        order.setStatus(event.get(1));
+        order.setCompletionDate(event.isEmpty(2) ? null : 
+            LocalDateTime.parse(event.get(2), DATETIME_FORMATTER));
+    }
+    
+    static Product parseProductRow(CSVRow row, int first) {
+        int fields = row.size() - first;
+        if (fields < 11) return null;
+        
+        try {
+            Product product = new Product();
+            product.setProductId(row.get(first));
+            product.setBarcode(row.get(first + 1));
+            product.setName(row.get(first + 2));
+            product.setCategory(row.get(first + 3));
+            product.setDescription(row.get(first + 4));
+            product.setPurchasePrice(row.getDouble(first + 5));
+            product.setSellingPrice(row.getDouble(first + 6));
+            product.setQuantityInStock(row.getInt(first + 7));
+            product.setMinStockLevel(row.getInt(first + 8));
+            product.setMaxStockLevel(row.getInt(first + 9));
+            product.setSupplierId(row.get(first + 10));
+            
+            if (fields > 11 && !row.isEmpty(first + 11)) {
+                product.setLocation(row.get(first + 11));
+            }
+            if (fields > 12 && !row.isEmpty(first + 12)) {
+                product.setExpiryDate(LocalDate.parse(row.get(first + 12), DATE_FORMATTER));
+            }
+            if (fields > 13 && !row.isEmpty(first + 13)) {
+                product.setPerishable(row.getBoolean(first + 13));
+            }
+            if (fields > 14 && !row.isEmpty(first + 14)) {
+                product.setUnit(row.get(first + 14));
+            }
+            if (fields > 15 && !row.isEmpty(first + 15)) {
+                product.setQuantitySold(row.getInt(first + 15));
+            }
+            if (fields > 16 && !row.isEmpty(first + 16)) {
+                product.setLastRestocked(LocalDate.parse(row.get(first + 16), DATE_FORMATTER));
+            }
+            if (fields > 17 && !row.isEmpty(first + 17)) {
+                product.setLots(StockLots.decode(row.get(first + 17)));
+            }
+            
+            return product;
+        } catch (Exception e) {
+            System.err.println("Error parsing product row: " + row);
+            return null;
+        }
+    }
+    
+    static Order parseOrderRow(CSVRow row) {
+        if (row.size() < 9) return null;
+        
+        try {
+            Order order = new Order();
+            order.setOrderId(row.get(0));
+            order.setCustomerId(row.get(1));
+            order.setOrderDate(LocalDateTime.parse(row.get(2), DATETIME_FORMATTER));
+            order.restoreAmounts(row.getDouble(3), row.getDouble(4), row.getDouble(5), row.getDouble(6));
+            order.setStatus(row.get(7));
+            order.setPaymentMethod(row.get(8));
+            
+            if (row.size() > 9 && !row.isEmpty(9)) {
+                order.setNotes(row.get(9));
+            }
+            if (row.size() > 10 && !row.isEmpty(10)) {
+                order.setCompletionDate(LocalDateTime.parse(row.get(10), DATETIME_FORMATTER));
+            }
+            
+            return order;
+        } catch (Exception e) {
+            System.err.println("Error parsing order row: " + row);
+            return null;
+        }
+    }
+    
+    static OrderItem parseOrderItemRow(CSVRow row) {
+        if (row.size() < 6) return null;
+        
+        try {
+            OrderItem item = new OrderItem(row.get(1), row.get(2), row.getDouble(3), row.getInt(4));
+            item.setDiscount(row.getDouble(5));
+            if (row.size() > 7 && !row.isEmpty(7)) {
+                item.setCategory(row.get(7));
+            }
+            return item;
+        } catch (Exception e) {
+            System.err.println("Error parsing order item row: " + row);
+            return null;
+        }
+    }
+    
+    static Customer parseCustomerRow(CSVRow row, int first) {
+        int fields = row.size() - first;
+        if (fields < 8) return null;
+        
+        try {
+            Customer customer = new Customer();
+            customer.setCustomerId(row.get(first));
+            customer.setFirstName(row.get(first + 1));
+            customer.setLastName(row.get(first + 2));
+            customer.setEmail(row.get(first + 3));
+            customer.setPhone(row.get(first + 4));
+            customer.setAddress(row.get(first + 5));
+            customer.setJoinDate(LocalDate.parse(row.get(first + 6), DATE_FORMATTER));
+            customer.setTotalPurchases(row.getDouble(first + 7));
+            
+            if (fields > 8 && !row.isEmpty(first + 8)) {
+                customer.setLoyaltyPoints(row.getInt(first + 8));
+            }
+            if (fields > 9 && !row.isEmpty(first + 9)) {
+                customer.setCustomerType(row.get(first + 9));
+            }
+            if (fields > 10 && !row.isEmpty(first + 10)) {
+                customer.setLastPurchase(LocalDateTime.parse(row.get(first + 10), DATETIME_FORMATTER));
+            }
+            
+            return customer;
+        } catch (Exception e) {
+            System.err.println("Error parsing customer row: " + row);
+            return null;
+        }
+    }
+    
+    // Collects order item rows, then puts them on their orders
+    static class OrderItems implements Consumer<CSVRow> {
+        private final Map<String, List<OrderItem>> itemsByOrder = new HashMap<>();
+        private String blockId;
+        
+        @Override
+        public void accept(CSVRow row) {
+            OrderItem item = parseOrderItemRow(row);
+            if (item == null) return;
+            
+            // An order's items are written as one block starting at line 0. If the
+            // same order turns up in a later block, it was saved twice and the
+            // later block wins. Rows from before line numbers go by adjacency.
+            String orderId = row.get(0);
+            boolean blockStart = row.size() > 6 ? row.getInt(6) == 0 : !orderId.equals(blockId);
+            if (blockStart) {
+                itemsByOrder.put(orderId, new ArrayList<>());
+            }
+            blockId = orderId;
+            itemsByOrder.computeIfAbsent(orderId, id -> new ArrayList<>()).add(item);
+        }
+        
+        // setItems recalculates the amounts, so the saved ones are put back
+        void attachTo(List<Order> orders) {
+            for (Order order : orders) {
+                List<OrderItem> items = itemsByOrder.get(order.getOrderId());
+                if (items != null) {
+                    double total = order.getTotalAmount();
+                    double discount = order.getDiscount();
+                    double tax = order.getTax();
+                    double finalAmount = order.getFinalAmount();
+                    order.setItems(items);
+                    order.restoreAmounts(total, discount, tax, finalAmount);
+                }
+            }
+        }
+    }
+}
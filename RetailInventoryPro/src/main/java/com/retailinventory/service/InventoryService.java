@@ -1,50 +1,76 @@
 package com.retailinventory.service;
 
 import com.retailinventory.model.Product;
+import com.retailinventory.model.Order;
+import com.retailinventory.model.OrderItem;
+import com.retailinventory.model.StockLots;
+import com.retailinventory.exception.FileProcessingException;
 import com.retailinventory.exception.InventoryException;
 import com.retailinventory.exception.InsufficientStockException;
+import com.retailinventory.util.StripedLocks;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.locks.Lock;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 public class InventoryService {
     private Map<String, Product> inventory;
-    private FileDataService fileDataService;
+    private ProductIndex productIndex;
+    private StripedLocks productLocks;
+    private ReservationLedger reservations;
+    private ProductCommitQueue productCommits;
+    private DataRepository repository;
     
     public InventoryService() {
-        this.inventory = new HashMap<>();
-        this.fileDataService = new FileDataService();
-        loadInventory();
+        this(DataStore.getInstance());
     }
     
-    private void loadInventory() {
-        try {
-            List<Product> products = fileDataService.loadProducts();
-            for (Product product : products) {
-                inventory.put(product.getProductId(), product);
-            }
-            System.out.println("Loaded " + inventory.size() + " products from file.");
-        } catch (Exception e) {
-            System.err.println("Error loading inventory: " + e.getMessage());
-            createSampleInventory();
-        }
+    public InventoryService(DataStore dataStore) {
+        this.inventory = dataStore.getProducts();
+        this.productIndex = dataStore.getProductIndex();
+        this.productLocks = dataStore.getProductLocks();
+        this.reservations = dataStore.getReservations();
+        this.productCommits = dataStore.getProductCommits();
+        this.repository = dataStore.getRepository();
     }
     
+    // Like every product change, the save is queued while the product's lock is
+    // held and waited for after it is released; see ProductCommitQueue
     public void addProduct(Product product) throws InventoryException {
         validateProduct(product);
         
-        if (inventory.containsKey(product.getProductId())) {
-            throw new InventoryException("Product with ID " + product.getProductId() + " already exists.");
+        ProductCommitQueue.Batch batch;
+        Lock lock = productLocks.get(product.getProductId());
+        lock.lock();
+        try {
+            if (inventory.containsKey(product.getProductId())) {
+                throw new InventoryException("Product with ID " + product.getProductId() + " already exists.");
+            }
+            
+            product.setLastRestocked(LocalDate.now());
+            productIndex.addUnique(product);
+            inventory.put(product.getProductId(), product);
+            batch = productCommits.submit(Collections.singletonList(product));
+        } finally {
+            lock.unlock();
         }
         
-        inventory.put(product.getProductId(), product);
-        product.setLastRestocked(LocalDate.now());
-        
         try {
-            fileDataService.saveProduct(product);
-        } catch (Exception e) {
-            inventory.remove(product.getProductId());
+            productCommits.await(batch);
+        } catch (FileProcessingException e) {
+            // Rollback, unless the product has been replaced or deleted since
+            ProductCommitQueue.Batch undo = null;
+            lock.lock();
+            try {
+                if (inventory.get(product.getProductId()) == product) {
+                    inventory.remove(product.getProductId());
+                    productIndex.remove(product.getProductId());
+                    undo = productCommits.submitDelete(product.getProductId());
+                }
+            } finally {
+                lock.unlock();
+            }
+            awaitUndo(undo);
             throw new InventoryException("Failed to save product to file", e);
         }
     }
@@ -52,105 +78,234 @@ public class InventoryService {
     public void updateProduct(Product product) throws InventoryException {
         validateProduct(product);
         
-        if (!inventory.containsKey(product.getProductId())) {
-            throw new InventoryException("Product not found: " + product.getProductId());
+        ProductCommitQueue.Batch batch;
+        Lock lock = productLocks.get(product.getProductId());
+        lock.lock();
+        try {
+            if (!inventory.containsKey(product.getProductId())) {
+                throw new InventoryException("Product not found: " + product.getProductId());
+            }
+            
+            productIndex.updateUnique(product);
+            inventory.put(product.getProductId(), product);
+            batch = productCommits.submit(Collections.singletonList(product));
+        } finally {
+            lock.unlock();
         }
         
-        inventory.put(product.getProductId(), product);
-        
         try {
-            fileDataService.saveProduct(product);
-        } catch (Exception e) {
+            productCommits.await(batch);
+        } catch (FileProcessingException e) {
             throw new InventoryException("Failed to update product in file", e);
         }
     }
     
     public void deleteProduct(String productId) throws InventoryException {
-        if (!inventory.containsKey(productId)) {
-            throw new InventoryException("Product not found: " + productId);
+        Product removed;
+        ProductCommitQueue.Batch batch;
+        Lock lock = productLocks.get(productId);
+        lock.lock();
+        try {
+            removed = getProduct(productId);
+            if (removed == null) {
+                throw new InventoryException("Product not found: " + productId);
+            }
+            inventory.remove(productId);
+            productIndex.remove(productId);
+            batch = productCommits.submitDelete(productId);
+        } finally {
+            lock.unlock();
         }
         
-        Product removed = inventory.remove(productId);
-        
         try {
-            fileDataService.deleteProduct(productId);
-        } catch (Exception e) {
-            // Rollback
-            inventory.put(productId, removed);
+            productCommits.await(batch);
+        } catch (FileProcessingException e) {
+            // Rollback, unless a product with this ID has been added since
+            ProductCommitQueue.Batch undo = null;
+            lock.lock();
+            try {
+                if (!inventory.containsKey(productId)) {
+                    inventory.put(productId, removed);
+                    productIndex.add(removed);
+                    undo = productCommits.submit(Collections.singletonList(removed));
+                }
+            } finally {
+                lock.unlock();
+            }
+            awaitUndo(undo);
             throw new InventoryException("Failed to delete product from file", e);
         }
     }
     
     public Product getProduct(String productId) {
-        return inventory.get(productId);
+        return productId != null ? inventory.get(productId) : null;
     }
     
     public Product getProductByBarcode(String barcode) {
-        return inventory.values().stream()
-            .filter(p -> p.getBarcode().equals(barcode))
-            .findFirst()
-            .orElse(null);
+        return productIndex.getByBarcode(barcode);
     }
     
     public List<Product> getAllProducts() {
         return new ArrayList<>(inventory.values());
     }
     
+    // Every match, as the product panel and console list them all
     public List<Product> searchProducts(String keyword) {
-        String searchTerm = keyword.toLowerCase();
-        return inventory.values().stream()
-            .filter(p -> 
-                p.getName().toLowerCase().contains(searchTerm) ||
-                p.getProductId().toLowerCase().contains(searchTerm) ||
-                p.getBarcode().contains(searchTerm) ||
-                p.getCategory().toLowerCase().contains(searchTerm) ||
-                (p.getDescription() != null && p.getDescription().toLowerCase().contains(searchTerm)))
-            .collect(Collectors.toList());
+        return searchProducts(keyword, Integer.MAX_VALUE);
+    }
+    
+    // Every word must appear in a word of the product's ID, barcode, name,
+    // category or description. ID and name matches rank highest, and whole
+    // words and word starts above matches inside a word.
+    public List<Product> searchProducts(String keyword, int limit) {
+        return productIndex.search(keyword, limit);
     }
     
     public List<Product> getProductsByCategory(String category) {
-        return inventory.values().stream()
-            .filter(p -> p.getCategory().equalsIgnoreCase(category))
-            .collect(Collectors.toList());
+        return productIndex.getByCategory(category);
     }
     
     public void addStock(String productId, int quantity, String batchNumber, LocalDate expiryDate) 
             throws InventoryException {
         
-        Product product = inventory.get(productId);
-        if (product == null) {
-            throw new InventoryException("Product not found: " + productId);
-        }
-        
         if (quantity <= 0) {
             throw new InventoryException("Quantity must be positive");
         }
         
-        int newQuantity = product.getQuantityInStock() + quantity;
-        if (newQuantity > product.getMaxStockLevel()) {
-            throw new InventoryException(
-                String.format("Exceeds maximum stock level (%d). Current: %d, Adding: %d",
-                    product.getMaxStockLevel(), product.getQuantityInStock(), quantity));
+        Product product;
+        LocalDate oldExpiry;
+        LocalDate oldRestocked;
+        LocalDate lotExpiry;
+        boolean tracked;
+        int newQuantity;
+        ProductCommitQueue.Batch batch;
+        Lock lock = productLocks.get(productId);
+        lock.lock();
+        try {
+            product = getProduct(productId);
+            if (product == null) {
+                throw new InventoryException("Product not found: " + productId);
+            }
+            
+            newQuantity = product.getQuantityInStock() + quantity;
+            if (newQuantity > product.getMaxStockLevel()) {
+                throw new InventoryException(
+                    String.format("Exceeds maximum stock level (%d). Current: %d, Adding: %d",
+                        product.getMaxStockLevel(), product.getQuantityInStock(), quantity));
+            }
+            
+            oldExpiry = product.getExpiryDate();
+            oldRestocked = product.getLastRestocked();
+            
+            // Perishables and named batches are tracked as lots. Stock already on
+            // the shelf of a perishable becomes a lot of its own at the old expiry.
+            lotExpiry = product.isPerishable() ? expiryDate : null;
+            tracked = lotExpiry != null || (batchNumber != null && !batchNumber.isEmpty());
+            if (tracked) {
+                StockLots lots = product.getLots();
+                int untracked = product.getQuantityInStock() - lots.getTotalQuantity();
+                if (untracked > 0 && product.isPerishable() && oldExpiry != null) {
+                    lots.add("", untracked, oldExpiry);
+                }
+                lots.add(batchNumber, quantity, lotExpiry);
+            }
+            
+            product.setQuantityInStock(newQuantity);
+            product.setLastRestocked(LocalDate.now());
+            updateExpiryFromLots(product);
+            productIndex.refresh(product);
+            batch = productCommits.submit(Collections.singletonList(product));
+        } finally {
+            lock.unlock();
+        }
+        
+        try {
+            productCommits.await(batch);
+        } catch (FileProcessingException e) {
+            // Rollback: take the delivery back out. Sales since may have drawn on
+            // it, so this is done to the product as it is now.
+            ProductCommitQueue.Batch undo = null;
+            lock.lock();
+            try {
+                if (getProduct(productId) == product) {
+                    if (tracked) {
+                        product.getLots().remove(batchNumber, quantity, lotExpiry);
+                    }
+                    product.setQuantityInStock(Math.max(0, product.getQuantityInStock() - quantity));
+                    product.setLastRestocked(oldRestocked);
+                    if (product.getLots().isEmpty()) {
+                        product.setExpiryDate(oldExpiry);
+                    } else {
+                        updateExpiryFromLots(product);
+                    }
+                    productIndex.refresh(product);
+                    undo = productCommits.submit(Collections.singletonList(product));
+                }
+            } finally {
+                lock.unlock();
+            }
+            awaitUndo(undo);
+            throw new InventoryException("Failed to update stock", e);
         }
         
-        product.setQuantityInStock(newQuantity);
-        product.setLastRestocked(LocalDate.now());
+        try {
+            repository.logStockMovement(productId, "RESTOCK", quantity, newQuantity, batchNumber);
+        } catch (Exception e) {
+            System.err.println("Failed to log stock movement: " + e.getMessage());
+        }
         
-        if (expiryDate != null && product.isPerishable()) {
-            product.setExpiryDate(expiryDate);
+        if (product.needsReorder()) {
+            sendLowStockAlert(product);
         }
+    }
+    
+    // The stock check and the decrement happen under the product's lock, so
+    // concurrent registers can never sell the same unit twice. The new stock is
+    // saved after the lock is released, together with other waiting sales.
+    public void sellProduct(String productId, int quantity, String customerId, String transactionId) 
+            throws InventoryException {
         
+        if (quantity <= 0) {
+            throw new InventoryException("Quantity must be positive");
+        }
+        
+        Product product;
+        int newQuantity;
+        Sale sale = new Sale();
+        ProductCommitQueue.Batch batch;
+        Lock lock = productLocks.get(productId);
+        lock.lock();
         try {
-            fileDataService.saveProduct(product);
+            product = getProduct(productId);
+            if (product == null) {
+                throw new InventoryException("Product not found: " + productId);
+            }
             
-            // Log stock movement
-            fileDataService.logStockMovement(productId, "RESTOCK", quantity, 
-                product.getQuantityInStock(), batchNumber);
+            if (product.isExpired() && product.getLots().isEmpty()) {
+                throw new InventoryException("Cannot sell expired product: " + product.getName());
+            }
+            
+            // Units held for pending orders can't be sold to anyone else
+            int available = getAvailableQuantity(product);
+            if (available < quantity) {
+                throw new InsufficientStockException(productId, quantity, available);
+            }
             
+            sale.add(productId, quantity, takeStock(product, quantity));
+            product.setQuantitySold(product.getQuantitySold() + quantity);
+            productIndex.refresh(product);
+            newQuantity = product.getQuantityInStock();
+            batch = productCommits.submit(Collections.singletonList(product));
+        } finally {
+            lock.unlock();
+        }
+        
+        commitSale(batch, sale, "Failed to process sale");
+        
+        try {
+            repository.logStockMovement(productId, "SALE", -quantity, newQuantity, transactionId);
         } catch (Exception e) {
-            // Rollback
-            product.setQuantityInStock(product.getQuantityInStock() - quantity);
-            throw new InventoryException("Failed to update stock", e);
+            System.err.println("Failed to log stock movement: " + e.getMessage());
         }
         
         if (product.needsReorder()) {
@@ -158,129 +313,417 @@ public class InventoryService {
         }
     }
     
-    public void sellProduct(String productId, int quantity, String customerId, String transactionId) 
+    // Sells every line or none. All the products' locks are held while the
+    // lines are checked and applied; the new stock is saved after they are
+    // released, together with any other sales waiting to be saved.
+    // Stock reserved under transactionId (the order ID) is available to it and
+    // the reservation is released once the sale is saved.
+    public void sellProducts(List<OrderItem> items, String customerId, String transactionId)
             throws InventoryException {
         
-        Product product = inventory.get(productId);
-        if (product == null) {
-            throw new InventoryException("Product not found: " + productId);
+        Map<String, Integer> quantities = quantitiesByProduct(items);
+        List<Product> sold = new ArrayList<>(quantities.size());
+        Map<String, Integer> newQuantities = new HashMap<>();
+        Sale sale = new Sale();
+        ProductCommitQueue.Batch batch;
+        List<Lock> locks = productLocks.getAll(quantities.keySet());
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+        try {
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                Product product = getProduct(line.getKey());
+                if (product == null) {
+                    throw new InventoryException("Product not found: " + line.getKey());
+                }
+                if (product.isExpired() && product.getLots().isEmpty()) {
+                    throw new InventoryException("Cannot sell expired product: " + product.getName());
+                }
+                int available = getAvailableQuantity(product)
+                    + reservations.getHeld(transactionId, line.getKey());
+                if (available < line.getValue()) {
+                    throw new InsufficientStockException(line.getKey(), line.getValue(), available);
+                }
+                sold.add(product);
+            }
+            
+            for (Product product : sold) {
+                int quantity = quantities.get(product.getProductId());
+                sale.add(product.getProductId(), quantity, takeStock(product, quantity));
+                product.setQuantitySold(product.getQuantitySold() + quantity);
+                productIndex.refresh(product);
+                newQuantities.put(product.getProductId(), product.getQuantityInStock());
+            }
+            batch = productCommits.submit(sold);
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
         }
         
-        if (quantity <= 0) {
-            throw new InventoryException("Quantity must be positive");
+        commitSale(batch, sale, "Failed to process sale");
+        reservations.release(transactionId);
+        
+        for (Product product : sold) {
+            try {
+                repository.logStockMovement(product.getProductId(), "SALE",
+                    -quantities.get(product.getProductId()), newQuantities.get(product.getProductId()), 
+                    transactionId);
+            } catch (Exception e) {
+                System.err.println("Failed to log stock movement: " + e.getMessage());
+            }
         }
         
-        if (product.getQuantityInStock() < quantity) {
-            throw new InsufficientStockException(productId, quantity, product.getQuantityInStock());
+        for (Product product : sold) {
+            if (product.needsReorder()) {
+                sendLowStockAlert(product);
+            }
+        }
+    }
+    
+    // Waits for a sale's products to be saved. If they can't be, the sale is
+    // taken back out and the corrected products are saved.
+    private void commitSale(ProductCommitQueue.Batch batch, Sale sale, String message)
+            throws InventoryException {
+        try {
+            productCommits.await(batch);
+        } catch (FileProcessingException e) {
+            undoSale(sale);
+            throw new InventoryException(message, e);
+        }
+    }
+    
+    // Takes back a sale that was saved but whose orders could not be, with one
+    // save for all its products, and logs the stock coming back
+    public void returnSale(Sale sale, String reference) {
+        Map<String, Integer> newQuantities = undoSale(sale);
+        newQuantities.forEach((productId, newQuantity) -> {
+            try {
+                repository.logStockMovement(productId, "RETURN", sale.quantities.get(productId),
+                    newQuantity, reference);
+            } catch (Exception e) {
+                System.err.println("Failed to log stock movement: " + e.getMessage());
+            }
+        });
+    }
+    
+    // Puts back the units and lots the sale took and takes them off the sold
+    // counts. Other sales since keep what they took, so each product ends up as
+    // if this sale alone had never happened. Returns each product's new stock.
+    private Map<String, Integer> undoSale(Sale sale) {
+        List<Product> restored = new ArrayList<>(sale.quantities.size());
+        Map<String, Integer> newQuantities = new LinkedHashMap<>();
+        ProductCommitQueue.Batch batch;
+        List<Lock> locks = productLocks.getAll(sale.quantities.keySet());
+        for (Lock lock : locks) {
+            lock.lock();
+        }
+        try {
+            for (Map.Entry<String, Integer> line : sale.quantities.entrySet()) {
+                Product product = getProduct(line.getKey());
+                if (product == null) continue;
+                
+                product.setQuantityInStock(product.getQuantityInStock() + line.getValue());
+                product.getLots().addAll(sale.lots.get(line.getKey()));
+                product.setQuantitySold(Math.max(0, product.getQuantitySold() - line.getValue()));
+                updateExpiryFromLots(product);
+                productIndex.refresh(product);
+                restored.add(product);
+                newQuantities.put(product.getProductId(), product.getQuantityInStock());
+            }
+            batch = productCommits.submit(restored);
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
         }
         
-        if (product.isExpired()) {
-            throw new InventoryException("Cannot sell expired product: " + product.getName());
+        awaitUndo(batch);
+        return newQuantities;
+    }
+    
+    // Waits for the save of a change that took back one that couldn't be saved
+    private void awaitUndo(ProductCommitQueue.Batch batch) {
+        if (batch == null) {
+            return;
         }
+        try {
+            productCommits.await(batch);
+        } catch (FileProcessingException e) {
+            System.err.println("Failed to save stock after undoing a change: " + e.getMessage());
+        }
+    }
+    
+    // Sells a batch of orders in one pass. Every product in the batch is locked
+    // once, each order is checked in turn against the stock the orders before
+    // it left, and the changed products are saved in one write. An order that
+    // can't be filled in full is skipped and its reason put in 'rejected' under
+    // its order ID. Returns the sale, whose orders are the ones sold.
+    public Sale sellOrders(List<Order> orders, Map<String, String> rejected)
+            throws InventoryException {
         
-        int oldQuantity = product.getQuantityInStock();
-        product.setQuantityInStock(oldQuantity - quantity);
-        product.setQuantitySold(product.getQuantitySold() + quantity);
+        Set<String> productIds = new HashSet<>();
+        for (Order order : orders) {
+            for (OrderItem item : order.getItems()) {
+                productIds.add(item.getProductId());
+            }
+        }
         
+        Sale sale = new Sale();
+        List<Order> accepted = sale.orders;
+        List<Product> sold = new ArrayList<>();
+        Map<String, Integer> soldQuantities = new LinkedHashMap<>();
+        // Each accepted order's quantity per product, in the same order as 'accepted'
+        List<Map<String, Integer>> orderQuantities = new ArrayList<>(orders.size());
+        List<SaleMovement> movements = new ArrayList<>();
+        ProductCommitQueue.Batch batch;
+        List<Lock> locks = productLocks.getAll(productIds);
+        for (Lock lock : locks) {
+            lock.lock();
+        }
         try {
-            fileDataService.saveProduct(product);
+            // What each product has left for the orders still to be checked
+            Map<String, Integer> remaining = new HashMap<>();
+            for (Order order : orders) {
+                String reason = checkOrder(order, remaining);
+                if (reason != null) {
+                    rejected.put(order.getOrderId(), reason);
+                    continue;
+                }
+                
+                Map<String, Integer> quantities = new LinkedHashMap<>();
+                for (OrderItem item : order.getItems()) {
+                    quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+                }
+                quantities.forEach((productId, quantity) -> {
+                    remaining.merge(productId, -quantity, Integer::sum);
+                    soldQuantities.merge(productId, quantity, Integer::sum);
+                });
+                orderQuantities.add(quantities);
+                accepted.add(order);
+            }
             
-            // Log stock movement
-            fileDataService.logStockMovement(productId, "SALE", -quantity, 
-                product.getQuantityInStock(), transactionId);
+            if (accepted.isEmpty()) {
+                return sale;
+            }
             
-        } catch (Exception e) {
-            // Rollback
-            product.setQuantityInStock(oldQuantity);
-            product.setQuantitySold(product.getQuantitySold() - quantity);
-            throw new InventoryException("Failed to process sale", e);
+            // Stock level after each order in turn, as if they had been sold one by one
+            Map<String, Integer> running = new HashMap<>();
+            for (Map.Entry<String, Integer> line : soldQuantities.entrySet()) {
+                Product product = getProduct(line.getKey());
+                running.put(product.getProductId(), product.getQuantityInStock());
+                sale.add(line.getKey(), line.getValue(), takeStock(product, line.getValue()));
+                product.setQuantitySold(product.getQuantitySold() + line.getValue());
+                productIndex.refresh(product);
+                sold.add(product);
+            }
+            for (int i = 0; i < accepted.size(); i++) {
+                String orderId = accepted.get(i).getOrderId();
+                orderQuantities.get(i).forEach((productId, quantity) -> movements.add(
+                    new SaleMovement(productId, quantity, running.merge(productId, -quantity, Integer::sum), orderId)));
+            }
+            batch = productCommits.submit(sold);
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
         }
         
-        if (product.needsReorder()) {
-            sendLowStockAlert(product);
+        commitSale(batch, sale, "Failed to process sales");
+        
+        // One movement per order and product, as processOrder would have logged
+        for (SaleMovement movement : movements) {
+            try {
+                repository.logStockMovement(movement.productId, "SALE", -movement.quantity,
+                    movement.newQuantity, movement.orderId);
+            } catch (Exception e) {
+                System.err.println("Failed to log stock movement: " + e.getMessage());
+            }
         }
+        
+        for (Product product : sold) {
+            if (product.needsReorder()) {
+                sendLowStockAlert(product);
+            }
+        }
+        return sale;
     }
     
-    public void returnProduct(String productId, int quantity, String reason, String originalTransactionId) 
-            throws InventoryException {
+    // Why the order can't be sold from 'remaining', or null if it can
+    private String checkOrder(Order order, Map<String, Integer> remaining) {
+        if (order.getItems().isEmpty()) {
+            return "Order has no items";
+        }
         
-        Product product = inventory.get(productId);
-        if (product == null) {
-            throw new InventoryException("Product not found: " + productId);
+        Map<String, Integer> quantities;
+        try {
+            quantities = quantitiesByProduct(order.getItems());
+        } catch (InventoryException e) {
+            return e.getMessage();
         }
         
-        product.setQuantityInStock(product.getQuantityInStock() + quantity);
+        for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+            Product product = getProduct(line.getKey());
+            if (product == null) {
+                return "Product not found: " + line.getKey();
+            }
+            if (product.isExpired() && product.getLots().isEmpty()) {
+                return "Cannot sell expired product: " + product.getName();
+            }
+            int available = remaining.computeIfAbsent(line.getKey(), k -> getAvailableQuantity(product));
+            if (available < line.getValue()) {
+                return new InsufficientStockException(line.getKey(), line.getValue(), available).getMessage();
+            }
+        }
+        return null;
+    }
+    
+    // Holds stock for a pending order until it is sold, released or the
+    // reservation expires. Fails without holding anything if any line is short.
+    public void reserveProducts(String orderId, List<OrderItem> items) throws InventoryException {
+        Map<String, Integer> quantities = quantitiesByProduct(items);
         
+        List<Lock> locks = productLocks.getAll(quantities.keySet());
+        for (Lock lock : locks) {
+            lock.lock();
+        }
         try {
-            fileDataService.saveProduct(product);
+            for (Map.Entry<String, Integer> line : quantities.entrySet()) {
+                Product product = getProduct(line.getKey());
+                if (product == null) {
+                    throw new InventoryException("Product not found: " + line.getKey());
+                }
+                int available = getAvailableQuantity(product) + reservations.getHeld(orderId, line.getKey());
+                if (available < line.getValue()) {
+                    throw new InsufficientStockException(line.getKey(), line.getValue(), available);
+                }
+            }
             
-            // Log stock movement
-            fileDataService.logStockMovement(productId, "RETURN", quantity, 
-                product.getQuantityInStock(), originalTransactionId);
+            reservations.reserve(orderId, quantities);
+        } finally {
+            for (int i = locks.size() - 1; i >= 0; i--) {
+                locks.get(i).unlock();
+            }
+        }
+    }
+    
+    public void releaseReservation(String orderId) {
+        reservations.release(orderId);
+    }
+    
+    // On hand less what is held for pending orders
+    public int getAvailableQuantity(String productId) {
+        Product product = getProduct(productId);
+        return product != null ? getAvailableQuantity(product) : 0;
+    }
+    
+    // Lots past their expiry date stay on hand until written off but can't be sold
+    private int getAvailableQuantity(Product product) {
+        return product.getQuantityInStock() - product.getLots().getExpiredQuantity(LocalDate.now())
+            - reservations.getReserved(product.getProductId());
+    }
+    
+    // Sold units come out of stock that isn't in any lot first (it predates
+    // lot tracking), then out of unexpired lots, first expiring first out.
+    // Returns the units that came out of lots.
+    private StockLots takeStock(Product product, int quantity) {
+        StockLots lots = product.getLots();
+        int fromLots = quantity - (product.getQuantityInStock() - lots.getTotalQuantity());
+        StockLots taken = fromLots > 0 ? lots.take(fromLots, LocalDate.now()) : new StockLots();
+        product.setQuantityInStock(product.getQuantityInStock() - quantity);
+        updateExpiryFromLots(product);
+        return taken;
+    }
+    
+    // A product's expiry date is that of its first-expiring lot
+    private void updateExpiryFromLots(Product product) {
+        LocalDate earliest = product.getLots().getEarliestExpiry();
+        if (earliest != null && product.isPerishable()) {
+            product.setExpiryDate(earliest);
+        }
+    }
+    
+    
+    // A product listed on several lines is checked against its combined quantity
+    private static Map<String, Integer> quantitiesByProduct(List<OrderItem> items) throws InventoryException {
+        Map<String, Integer> quantities = new LinkedHashMap<>();
+        for (OrderItem item : items) {
+            if (item.getQuantity() <= 0) {
+                throw new InventoryException("Quantity must be positive");
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        return quantities;
+    }
+    
+    public void returnProduct(String productId, int quantity, String reason, String originalTransactionId) 
+            throws InventoryException {
+        
+        Product product;
+        int newQuantity;
+        ProductCommitQueue.Batch batch;
+        Lock lock = productLocks.get(productId);
+        lock.lock();
+        try {
+            product = getProduct(productId);
+            if (product == null) {
+                throw new InventoryException("Product not found: " + productId);
+            }
             
-        } catch (Exception e) {
+            product.setQuantityInStock(product.getQuantityInStock() + quantity);
+            productIndex.refresh(product);
+            newQuantity = product.getQuantityInStock();
+            batch = productCommits.submit(Collections.singletonList(product));
+        } finally {
+            lock.unlock();
+        }
+        
+        try {
+            productCommits.await(batch);
+        } catch (FileProcessingException e) {
             // Rollback
-            product.setQuantityInStock(product.getQuantityInStock() - quantity);
+            ProductCommitQueue.Batch undo = null;
+            lock.lock();
+            try {
+                if (getProduct(productId) == product) {
+                    product.setQuantityInStock(Math.max(0, product.getQuantityInStock() - quantity));
+                    productIndex.refresh(product);
+                    undo = productCommits.submit(Collections.singletonList(product));
+                }
+            } finally {
+                lock.unlock();
+            }
+            awaitUndo(undo);
             throw new InventoryException("Failed to process return", e);
         }
+        
+        try {
+            repository.logStockMovement(productId, "RETURN", quantity, newQuantity, originalTransactionId);
+        } catch (Exception e) {
+            System.err.println("Failed to log stock movement: " + e.getMessage());
+        }
     }
     
     public List<Product> getProductsNeedingReorder() {
-        return inventory.values().stream()
-            .filter(Product::needsReorder)
-            .sorted(Comparator.comparing(Product::getQuantityInStock))
-            .collect(Collectors.toList());
+        return productIndex.getProductsNeedingReorder();
     }
     
     public List<Product> getExpiringProducts(int daysThreshold) {
-        return inventory.values().stream()
-            .filter(p -> p.isPerishable() && p.willExpireSoon(daysThreshold))
-            .sorted(Comparator.comparing(Product::getExpiryDate))
-            .collect(Collectors.toList());
+        return productIndex.getExpiringProducts(daysThreshold);
     }
     
+    // Read-only view of getInventoryStatsSnapshot()
     public Map<String, Object> getInventoryStats() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        double totalValue = inventory.values().stream()
-            .mapToDouble(Product::getStockValue)
-            .sum();
-        
-        double totalPotentialRevenue = inventory.values().stream()
-            .mapToDouble(Product::getPotentialRevenue)
-            .sum();
-        
-        long lowStockCount = inventory.values().stream()
-            .filter(Product::needsReorder)
-            .count();
-        
-        long expiredCount = inventory.values().stream()
-            .filter(Product::isExpired)
-            .count();
-        
-        stats.put("totalProducts", inventory.size());
-        stats.put("totalValue", totalValue);
-        stats.put("totalPotentialRevenue", totalPotentialRevenue);
-        stats.put("lowStockCount", lowStockCount);
-        stats.put("expiredCount", expiredCount);
-        stats.put("lastUpdated", LocalDateTime.now());
-        
-        return stats;
+        return getInventoryStatsSnapshot().toMap();
+    }
+    
+    // Totals are maintained as products change, so this does not scan the inventory
+    public InventoryStats getInventoryStatsSnapshot() {
+        return productIndex.getStats();
     }
     
     public Map<String, CategorySummary> getCategorySummary() {
-        Map<String, CategorySummary> summary = new HashMap<>();
-        
-        inventory.values().forEach(product -> {
-            String category = product.getCategory();
-            CategorySummary catSummary = summary.getOrDefault(category, 
-                new CategorySummary(category));
-            
-            catSummary.addProduct(product);
-            summary.put(category, catSummary);
-        });
-        
-        return summary;
+        return productIndex.getCategorySummary();
     }
     
     public String generateReorderReport() {
@@ -339,47 +782,14 @@ public class InventoryService {
                           ", Min: " + product.getMinStockLevel() + ")");
         
         try {
-            fileDataService.saveLowStockAlert(product);
+            repository.saveLowStockAlert(product);
         } catch (Exception e) {
             System.err.println("Failed to save low stock alert: " + e.getMessage());
         }
     }
     
-    private void createSampleInventory() {
-        try {
-            Product p1 = new Product("Coca-Cola 330ml", "Beverage", 0.45, 0.99, 120);
-            p1.setMinStockLevel(50);
-            p1.setMaxStockLevel(200);
-            p1.setSupplierId("SUPP001");
-            p1.setLocation("Aisle 3, Shelf B");
-            
-            Product p2 = new Product("Lays Classic Chips 150g", "Snacks", 0.85, 1.99, 80);
-            p2.setMinStockLevel(30);
-            p2.setMaxStockLevel(150);
-            p2.setSupplierId("SUPP002");
-            p2.setLocation("Aisle 5, Shelf A");
-            p2.setExpiryDate(LocalDate.now().plusMonths(6));
-            p2.setPerishable(true);
-            
-            Product p3 = new Product("Dove Soap 100g", "Personal Care", 1.20, 2.49, 45);
-            p3.setMinStockLevel(20);
-            p3.setMaxStockLevel(100);
-            p3.setSupplierId("SUPP003");
-            p3.setLocation("Aisle 7, Shelf C");
-            
-            inventory.put(p1.getProductId(), p1);
-            inventory.put(p2.getProductId(), p2);
-            inventory.put(p3.getProductId(), p3);
-            
-            fileDataService.saveAllProducts(new ArrayList<>(inventory.values()));
-            
-        } catch (Exception e) {
-            System.err.println("Error creating sample inventory: " + e.getMessage());
-        }
-    }
-    
-    public FileDataService getFileService() {
-        return fileDataService;
+    public DataRepository getRepository() {
+        return repository;
     }
     
     // Inner class for category summary
@@ -395,10 +805,21 @@ public class InventoryService {
         }
         
         public void addProduct(Product product) {
-            productCount++;
-            totalStock += product.getQuantityInStock();
-            totalValue += product.getStockValue();
-            totalPotentialRevenue += product.getPotentialRevenue();
+            apply(1, product.getQuantityInStock(), product.getStockValue(), product.getPotentialRevenue());
+        }
+        
+        // Negative arguments take a product's contribution back out
+        void apply(int products, int stock, double value, double potentialRevenue) {
+            productCount += products;
+            totalStock += stock;
+            totalValue += value;
+            totalPotentialRevenue += potentialRevenue;
+        }
+        
+        CategorySummary copy() {
+            CategorySummary copy = new CategorySummary(category);
+            copy.apply(productCount, totalStock, totalValue, totalPotentialRevenue);
+            return copy;
         }
         
         public String getCategory() { return category; }
@@ -411,4 +832,35 @@ public class InventoryService {
             return productCount > 0 ? totalPotentialRevenue / totalStock : 0;
         }
     }
-}
\ No newline at end of file
+    
+    // What a sale took from each product, and which of those units came out of
+    // which lots. A sale of orders also lists the orders sold.
+    public static class Sale {
+        private final List<Order> orders = new ArrayList<>();
+        private final Map<String, Integer> quantities = new LinkedHashMap<>();
+        private final Map<String, StockLots> lots = new HashMap<>();
+        
+        public List<Order> getOrders() {
+            return orders;
+        }
+        
+        void add(String productId, int quantity, StockLots taken) {
+            quantities.put(productId, quantity);
+            lots.put(productId, taken);
+        }
+    }
+    
+    private static class SaleMovement {
+        final String productId;
+        final int quantity;
+        final int newQuantity;
+        final String orderId;
+        
+        SaleMovement(String productId, int quantity, int newQuantity, String orderId) {
+            this.productId = productId;
+            this.quantity = quantity;
+            this.newQuantity = newQuantity;
+            this.orderId = orderId;
+        }
+    }
+}
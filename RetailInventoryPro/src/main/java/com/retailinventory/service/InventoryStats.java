@@ -0,0 +1,46 @@
+package com.retailinventory.service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Immutable point-in-time copy of the running inventory totals
+public final class InventoryStats {
+    private final int totalProducts;
+    private final double totalValue;
+    private final double totalPotentialRevenue;
+    private final long lowStockCount;
+    private final long expiredCount;
+    private final LocalDateTime lastUpdated;
+    private final Map<String, Object> asMap;
+    
+    public InventoryStats(int totalProducts, double totalValue, double totalPotentialRevenue,
+                          long lowStockCount, long expiredCount, LocalDateTime lastUpdated) {
+        this.totalProducts = totalProducts;
+        this.totalValue = totalValue;
+        this.totalPotentialRevenue = totalPotentialRevenue;
+        this.lowStockCount = lowStockCount;
+        this.expiredCount = expiredCount;
+        this.lastUpdated = lastUpdated;
+        
+        Map<String, Object> map = new HashMap<>();
+        map.put("totalProducts", totalProducts);
+        map.put("totalValue", totalValue);
+        map.put("totalPotentialRevenue", totalPotentialRevenue);
+        map.put("lowStockCount", lowStockCount);
+        map.put("expiredCount", expiredCount);
+        map.put("lastUpdated", lastUpdated);
+        this.asMap = Collections.unmodifiableMap(map);
+    }
+    
+    public int getTotalProducts() { return totalProducts; }
+    public double getTotalValue() { return totalValue; }
+    public double getTotalPotentialRevenue() { return totalPotentialRevenue; }
+    public long getLowStockCount() { return lowStockCount; }
+    public long getExpiredCount() { return expiredCount; }
+    public LocalDateTime getLastUpdated() { return lastUpdated; }
+    
+    // Keys used by InventoryService.getInventoryStats
+    public Map<String, Object> toMap() {
+        return asMap;
+    }
+}
@@ -0,0 +1,841 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Product;
+import com.retailinventory.model.StockLots;
+import com.retailinventory.model.Order;
+import com.retailinventory.model.OrderItem;
+import com.retailinventory.model.Customer;
+import com.retailinventory.exception.FileProcessingException;
+
+import java.nio.file.*;
+import java.sql.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+// Embedded H2 or SQLite backend. Every mutation is a single prepared
+// statement (or one batched transaction), and range queries run against
+// indexed columns instead of in-memory scans.
+public class JdbcDataService implements DataRepository {
+    public static final String TYPE_H2 = "h2";
+    public static final String TYPE_SQLITE = "sqlite";
+    
+    private static final String BACKUP_DIR = "data/backups/";
+    private static final String REPORTS_DIR = "data/reports/";
+    
+    // Dates are kept as ISO text so they sort and compare the same way in both engines
+    private static final DateTimeFormatter DATE_FORMATTER =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter DATETIME_FORMATTER =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    
+    private static final String PRODUCT_COLUMNS =
+        "product_id, barcode, name, category, description, purchase_price, selling_price, " +
+        "quantity_in_stock, min_stock_level, max_stock_level, supplier_id, location, " +
+        "expiry_date, is_perishable, unit, quantity_sold, last_restocked";
+    private static final String LOT_COLUMNS =
+        "product_id, lot_no, lot_id, quantity, expiry_date";
+    private static final String ORDER_COLUMNS =
+        "order_id, customer_id, order_date, total_amount, discount, tax, final_amount, " +
+        "status, payment_method, notes, completion_date";
+    private static final String ITEM_COLUMNS =
+        "order_id, line_no, product_id, product_name, price, quantity, discount, category";
+    private static final String CUSTOMER_COLUMNS =
+        "customer_id, first_name, last_name, email, phone, address, join_date, " +
+        "total_purchases, loyalty_points, customer_type, last_purchase";
+    private static final String ROLLUP_COLUMNS =
+        "sale_date, dimension, rollup_key, revenue, items, transactions, tax, discount";
+    
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS products (" +
+            "product_id VARCHAR(64) PRIMARY KEY, barcode VARCHAR(64), name VARCHAR(255), " +
+            "category VARCHAR(128), description VARCHAR(1024), purchase_price DOUBLE, " +
+            "selling_price DOUBLE, quantity_in_stock INTEGER, min_stock_level INTEGER, " +
+            "max_stock_level INTEGER, supplier_id VARCHAR(64), location VARCHAR(255), " +
+            "expiry_date VARCHAR(10), is_perishable BOOLEAN, unit VARCHAR(32), " +
+            "quantity_sold INTEGER, last_restocked VARCHAR(10))",
+        "CREATE INDEX IF NOT EXISTS idx_products_barcode ON products (barcode)",
+        "CREATE INDEX IF NOT EXISTS idx_products_category ON products (category)",
+        
+        "CREATE TABLE IF NOT EXISTS stock_lots (" +
+            "product_id VARCHAR(64), lot_no INTEGER, lot_id VARCHAR(64), quantity INTEGER, " +
+            "expiry_date VARCHAR(10), PRIMARY KEY (product_id, lot_no))",
+        
+        "CREATE TABLE IF NOT EXISTS orders (" +
+            "order_id VARCHAR(64) PRIMARY KEY, customer_id VARCHAR(64), order_date VARCHAR(19), " +
+            "total_amount DOUBLE, discount DOUBLE, tax DOUBLE, final_amount DOUBLE, " +
+            "status VARCHAR(16), payment_method VARCHAR(32), notes VARCHAR(1024), " +
+            "completion_date VARCHAR(19))",
+        "CREATE INDEX IF NOT EXISTS idx_orders_order_date ON orders (order_date)",
+        "CREATE INDEX IF NOT EXISTS idx_orders_customer ON orders (customer_id)",
+        
+        "CREATE TABLE IF NOT EXISTS order_items (" +
+            "order_id VARCHAR(64), line_no INTEGER, product_id VARCHAR(64), " +
+            "product_name VARCHAR(255), price DOUBLE, quantity INTEGER, discount DOUBLE, " +
+            "category VARCHAR(128), PRIMARY KEY (order_id, line_no))",
+        "CREATE INDEX IF NOT EXISTS idx_order_items_product ON order_items (product_id)",
+        
+        "CREATE TABLE IF NOT EXISTS customers (" +
+            "customer_id VARCHAR(64) PRIMARY KEY, first_name VARCHAR(128), " +
+            "last_name VARCHAR(128), email VARCHAR(255), phone VARCHAR(64), " +
+            "address VARCHAR(512), join_date VARCHAR(10), total_purchases DOUBLE, " +
+            "loyalty_points INTEGER, customer_type VARCHAR(32), last_purchase VARCHAR(19))",
+        
+        "CREATE TABLE IF NOT EXISTS stock_movements (" +
+            "moved_at VARCHAR(19), product_id VARCHAR(64), movement_type VARCHAR(16), " +
+            "quantity_change INTEGER, new_quantity INTEGER, reference VARCHAR(128))",
+        "CREATE INDEX IF NOT EXISTS idx_stock_movements_product ON stock_movements (product_id)",
+        
+        "CREATE TABLE IF NOT EXISTS low_stock_alerts (" +
+            "alerted_at VARCHAR(19), product_id VARCHAR(64), name VARCHAR(255), " +
+            "quantity_in_stock INTEGER, min_stock_level INTEGER, category VARCHAR(128))",
+        
+        "CREATE TABLE IF NOT EXISTS sales_rollups (" +
+            "sale_date VARCHAR(10), dimension VARCHAR(16), rollup_key VARCHAR(128), revenue DOUBLE, " +
+            "items INTEGER, transactions INTEGER, tax DOUBLE, discount DOUBLE, " +
+            "PRIMARY KEY (sale_date, dimension, rollup_key))"
+    };
+    
+    private final String type;
+    private final Connection connection;
+    
+    public JdbcDataService(String type, String databasePath) throws FileProcessingException {
+        this.type = type;
+        
+        try {
+            Files.createDirectories(Paths.get(databasePath));
+            String url = TYPE_SQLITE.equals(type) ?
+                "jdbc:sqlite:" + databasePath + "retail_inventory.db" :
+                "jdbc:h2:" + Paths.get(databasePath, "retail_inventory").toAbsolutePath();
+            
+            this.connection = DriverManager.getConnection(url);
+            
+            try (Statement statement = connection.createStatement()) {
+                for (String ddl : SCHEMA) {
+                    statement.execute(ddl);
+                }
+            }
+            addColumnIfMissing("order_items", "category", "VARCHAR(128)");
+            
+            importFromFilesIfEmpty();
+            
+        } catch (Exception e) {
+            throw new FileProcessingException("Failed to open " + type + " database", e);
+        }
+    }
+    
+    // Databases created before a column existed get it added
+    private void addColumnIfMissing(String table, String column, String type) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                if (meta.getColumnName(i).equalsIgnoreCase(column)) {
+                    return;
+                }
+            }
+        }
+        
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE " + table + " ADD COLUMN " + column + " " + type);
+        }
+    }
+    
+    // First start on a database backend: carry the existing CSV data over.
+    // Everything goes in one transaction, so an import cut short leaves the
+    // database empty and is simply run again on the next start. The files are
+    // only read, so they are left exactly as the file backend had them.
+    private void importFromFilesIfEmpty() throws Exception {
+        for (String table : new String[]{"products", "orders", "customers"}) {
+            if (hasRows(table)) {
+                return;
+            }
+        }
+        
+        CSVImport files = new CSVImport();
+        List<Product> products = files.loadProducts();
+        List<Order> orders = files.loadOrders();
+        List<Customer> customers = files.loadCustomers();
+        
+        runInTransaction(() -> {
+            upsertProducts(products);
+            
+            try (PreparedStatement insertOrder = connection.prepareStatement(
+                     "INSERT INTO orders (" + ORDER_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement insertItem = connection.prepareStatement(
+                     "INSERT INTO order_items (" + ITEM_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)");
+                 PreparedStatement insertCustomer = connection.prepareStatement(
+                     "INSERT INTO customers (" + CUSTOMER_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                
+                for (Order order : orders) {
+                    bindOrder(insertOrder, order);
+                    insertOrder.addBatch();
+                    addItemBatch(insertItem, order);
+                }
+                for (Customer customer : customers) {
+                    bindCustomer(insertCustomer, customer);
+                    insertCustomer.addBatch();
+                }
+                
+                insertOrder.executeBatch();
+                insertItem.executeBatch();
+                insertCustomer.executeBatch();
+            }
+        });
+        
+        System.out.println("Imported " + products.size() + " products, " + orders.size() + " orders and " +
+                          customers.size() + " customers into the " + type + " database.");
+    }
+    
+    private boolean hasRows(String table) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+    
+    // Product operations
+    @Override
+    public synchronized List<Product> loadProducts() throws FileProcessingException {
+        List<Product> products = new ArrayList<>();
+        
+        try (Statement statement = connection.createStatement()) {
+            Map<String, StockLots> lots = new HashMap<>();
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT " + LOT_COLUMNS + " FROM stock_lots ORDER BY product_id, lot_no")) {
+                while (rs.next()) {
+                    lots.computeIfAbsent(rs.getString(1), id -> new StockLots())
+                        .add(rs.getString(3), rs.getInt(4), parseDate(rs.getString(5)));
+                }
+            }
+            
+            try (ResultSet rs = statement.executeQuery("SELECT " + PRODUCT_COLUMNS + " FROM products")) {
+                while (rs.next()) {
+                    try {
+                        Product product = readProduct(rs);
+                        product.setLots(lots.get(product.getProductId()));
+                        products.add(product);
+                    } catch (IllegalArgumentException e) {
+                        System.err.println("Error reading product: " + rs.getString(1));
+                    }
+                }
+            }
+            
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to load products", e);
+        }
+        
+        return products;
+    }
+    
+    @Override
+    public synchronized void saveProduct(Product product) throws FileProcessingException {
+        try {
+            upsertProducts(Collections.singletonList(product));
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save product", e);
+        }
+    }
+    
+    @Override
+    public synchronized void saveProducts(List<Product> products) throws FileProcessingException {
+        try {
+            upsertProducts(products);
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save products", e);
+        }
+    }
+    
+    // Each product row and its lots, replaced together
+    private void upsertProducts(List<Product> products) throws SQLException {
+        runInTransaction(() -> {
+            try (PreparedStatement upsert = connection.prepareStatement(
+                     upsert("products", "product_id", PRODUCT_COLUMNS, 17));
+                 PreparedStatement clearLots = connection.prepareStatement(
+                     "DELETE FROM stock_lots WHERE product_id = ?");
+                 PreparedStatement insertLot = connection.prepareStatement(
+                     "INSERT INTO stock_lots (" + LOT_COLUMNS + ") VALUES (?, ?, ?, ?, ?)")) {
+                
+                for (Product product : products) {
+                    bindProduct(upsert, product);
+                    upsert.addBatch();
+                    clearLots.setString(1, product.getProductId());
+                    clearLots.addBatch();
+                    addLotBatch(insertLot, product);
+                }
+                upsert.executeBatch();
+                clearLots.executeBatch();
+                insertLot.executeBatch();
+            }
+        });
+    }
+    
+    @Override
+    public synchronized void saveAllProducts(List<Product> products) throws FileProcessingException {
+        try {
+            runInTransaction(() -> {
+                try (Statement clear = connection.createStatement();
+                     PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO products (" + PRODUCT_COLUMNS + ") " +
+                         "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                     PreparedStatement insertLot = connection.prepareStatement(
+                         "INSERT INTO stock_lots (" + LOT_COLUMNS + ") VALUES (?, ?, ?, ?, ?)")) {
+                    
+                    clear.executeUpdate("DELETE FROM products");
+                    clear.executeUpdate("DELETE FROM stock_lots");
+                    for (Product product : products) {
+                        bindProduct(insert, product);
+                        insert.addBatch();
+                        addLotBatch(insertLot, product);
+                    }
+                    insert.executeBatch();
+                    insertLot.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save products", e);
+        }
+    }
+    
+    @Override
+    public synchronized void deleteProduct(String productId) throws FileProcessingException {
+        try {
+            deleteProducts(Collections.singletonList(productId));
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to delete product", e);
+        }
+    }
+    
+    @Override
+    public synchronized void saveProductChanges(List<Product> saved, List<String> deleted)
+            throws FileProcessingException {
+        try {
+            runInTransaction(() -> {
+                if (!saved.isEmpty()) {
+                    upsertProducts(saved);
+                }
+                if (!deleted.isEmpty()) {
+                    deleteProducts(deleted);
+                }
+            });
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save products", e);
+        }
+    }
+    
+    private void deleteProducts(List<String> productIds) throws SQLException {
+        runInTransaction(() -> {
+            try (PreparedStatement deleteProduct = connection.prepareStatement(
+                     "DELETE FROM products WHERE product_id = ?");
+                 PreparedStatement deleteLots = connection.prepareStatement(
+                     "DELETE FROM stock_lots WHERE product_id = ?")) {
+                for (String productId : productIds) {
+                    deleteProduct.setString(1, productId);
+                    deleteProduct.addBatch();
+                    deleteLots.setString(1, productId);
+                    deleteLots.addBatch();
+                }
+                deleteProduct.executeBatch();
+                deleteLots.executeBatch();
+            }
+        });
+    }
+    
+    @Override
+    public synchronized void logStockMovement(String productId, String movementType,
+                                              int quantityChange, int newQuantity, String reference)
+            throws FileProcessingException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO stock_movements (moved_at, product_id, movement_type, " +
+                "quantity_change, new_quantity, reference) VALUES (?, ?, ?, ?, ?, ?)")) {
+            statement.setString(1, LocalDateTime.now().format(DATETIME_FORMATTER));
+            statement.setString(2, productId);
+            statement.setString(3, movementType);
+            statement.setInt(4, quantityChange);
+            statement.setInt(5, newQuantity);
+            statement.setString(6, reference);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to log movement", e);
+        }
+    }
+    
+    @Override
+    public synchronized void saveLowStockAlert(Product product) throws FileProcessingException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO low_stock_alerts (alerted_at, product_id, name, " +
+                "quantity_in_stock, min_stock_level, category) VALUES (?, ?, ?, ?, ?, ?)")) {
+            statement.setString(1, LocalDateTime.now().format(DATETIME_FORMATTER));
+            statement.setString(2, product.getProductId());
+            statement.setString(3, product.getName());
+            statement.setInt(4, product.getQuantityInStock());
+            statement.setInt(5, product.getMinStockLevel());
+            statement.setString(6, product.getCategory());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save alert", e);
+        }
+    }
+    
+    // Order operations
+    @Override
+    public synchronized List<Order> loadOrders() throws FileProcessingException {
+        Map<String, Order> orders = new LinkedHashMap<>();
+        
+        try (Statement statement = connection.createStatement()) {
+            Map<String, List<OrderItem>> items = new HashMap<>();
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT " + ITEM_COLUMNS + " FROM order_items ORDER BY order_id, line_no")) {
+                while (rs.next()) {
+                    OrderItem item = new OrderItem(rs.getString(3), rs.getString(4),
+                        rs.getDouble(5), rs.getInt(6));
+                    item.setDiscount(rs.getDouble(7));
+                    item.setCategory(rs.getString(8));
+                    items.computeIfAbsent(rs.getString(1), id -> new ArrayList<>()).add(item);
+                }
+            }
+            
+            try (ResultSet rs = statement.executeQuery(
+                    "SELECT " + ORDER_COLUMNS + " FROM orders ORDER BY order_date")) {
+                while (rs.next()) {
+                    Order order = readOrder(rs, items.get(rs.getString(1)));
+                    orders.put(order.getOrderId(), order);
+                }
+            }
+            
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to load orders", e);
+        }
+        
+        return new ArrayList<>(orders.values());
+    }
+    
+    @Override
+    public synchronized void saveOrder(Order order) throws FileProcessingException {
+        try {
+            runInTransaction(() -> {
+                try (PreparedStatement insertOrder = connection.prepareStatement(
+                         "INSERT INTO orders (" + ORDER_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                     PreparedStatement insertItem = connection.prepareStatement(
+                         "INSERT INTO order_items (" + ITEM_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    
+                    bindOrder(insertOrder, order);
+                    insertOrder.executeUpdate();
+                    
+                    addItemBatch(insertItem, order);
+                    insertItem.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save order", e);
+        }
+    }
+    
+    @Override
+    public synchronized void saveOrders(List<Order> orders) throws FileProcessingException {
+        try {
+            runInTransaction(() -> {
+                try (PreparedStatement insertOrder = connection.prepareStatement(
+                         "INSERT INTO orders (" + ORDER_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+                     PreparedStatement insertItem = connection.prepareStatement(
+                         "INSERT INTO order_items (" + ITEM_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    
+                    for (Order order : orders) {
+                        bindOrder(insertOrder, order);
+                        insertOrder.addBatch();
+                        addItemBatch(insertItem, order);
+                    }
+                    insertOrder.executeBatch();
+                    insertItem.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save orders", e);
+        }
+    }
+    
+    @Override
+    public synchronized void updateOrder(Order order) throws FileProcessingException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "UPDATE orders SET status = ?, completion_date = ?, notes = ?, " +
+                "discount = ?, tax = ?, final_amount = ? WHERE order_id = ?")) {
+            statement.setString(1, order.getStatus());
+            statement.setString(2, formatDateTime(order.getCompletionDate()));
+            statement.setString(3, order.getNotes());
+            statement.setDouble(4, order.getDiscount());
+            statement.setDouble(5, order.getTax());
+            statement.setDouble(6, order.getFinalAmount());
+            statement.setString(7, order.getOrderId());
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to update order", e);
+        }
+    }
+    
+    // Sales rollup operations
+    @Override
+    public synchronized List<SalesRollups.Row> loadSalesRollups() throws FileProcessingException {
+        List<SalesRollups.Row> rows = new ArrayList<>();
+        
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT " + ROLLUP_COLUMNS + " FROM sales_rollups")) {
+            while (rs.next()) {
+                SalesRollups.Totals totals = new SalesRollups.Totals(rs.getDouble(4), rs.getInt(5),
+                    rs.getInt(6), rs.getDouble(7), rs.getDouble(8));
+                rows.add(new SalesRollups.Row(parseDate(rs.getString(1)), rs.getString(2),
+                    rs.getString(3), totals));
+            }
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to load sales rollups", e);
+        }
+        
+        return rows;
+    }
+    
+    @Override
+    public synchronized void saveSalesRollups(List<SalesRollups.Row> rows) throws FileProcessingException {
+        try {
+            runInTransaction(() -> {
+                try (PreparedStatement upsert = connection.prepareStatement(
+                         upsert("sales_rollups", "sale_date, dimension, rollup_key", ROLLUP_COLUMNS, 8))) {
+                    for (SalesRollups.Row row : rows) {
+                        bindRollup(upsert, row);
+                        upsert.addBatch();
+                    }
+                    upsert.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save sales rollups", e);
+        }
+    }
+    
+    @Override
+    public synchronized void saveAllSalesRollups(List<SalesRollups.Row> rows) throws FileProcessingException {
+        try {
+            runInTransaction(() -> {
+                try (Statement clear = connection.createStatement();
+                     PreparedStatement insert = connection.prepareStatement(
+                         "INSERT INTO sales_rollups (" + ROLLUP_COLUMNS + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    
+                    clear.executeUpdate("DELETE FROM sales_rollups");
+                    for (SalesRollups.Row row : rows) {
+                        bindRollup(insert, row);
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save sales rollups", e);
+        }
+    }
+    
+    // Customer operations
+    @Override
+    public synchronized List<Customer> loadCustomers() throws FileProcessingException {
+        List<Customer> customers = new ArrayList<>();
+        
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT " + CUSTOMER_COLUMNS + " FROM customers")) {
+            
+            while (rs.next()) {
+                Customer customer = new Customer();
+                customer.setCustomerId(rs.getString(1));
+                customer.setFirstName(rs.getString(2));
+                customer.setLastName(rs.getString(3));
+                customer.setEmail(rs.getString(4));
+                customer.setPhone(rs.getString(5));
+                customer.setAddress(rs.getString(6));
+                customer.setJoinDate(parseDate(rs.getString(7)));
+                customer.setTotalPurchases(rs.getDouble(8));
+                customer.setLoyaltyPoints(rs.getInt(9));
+                customer.setCustomerType(rs.getString(10));
+                customer.setLastPurchase(parseDateTime(rs.getString(11)));
+                customers.add(customer);
+            }
+            
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to load customers", e);
+        }
+        
+        return customers;
+    }
+    
+    @Override
+    public synchronized void saveCustomer(Customer customer) throws FileProcessingException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                upsert("customers", "customer_id", CUSTOMER_COLUMNS, 11))) {
+            bindCustomer(statement, customer);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save customer", e);
+        }
+    }
+    
+    @Override
+    public synchronized void saveCustomers(List<Customer> customers) throws FileProcessingException {
+        try {
+            runInTransaction(() -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        upsert("customers", "customer_id", CUSTOMER_COLUMNS, 11))) {
+                    for (Customer customer : customers) {
+                        bindCustomer(statement, customer);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            });
+        } catch (SQLException e) {
+            throw new FileProcessingException("Failed to save customers", e);
+        }
+    }
+    
+    // Backup operations
+    @Override
+    public synchronized void createBackup() throws FileProcessingException {
+        try {
+            Files.createDirectories(Paths.get(BACKUP_DIR));
+            String timestamp = LocalDateTime.now().format(
+                DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
+            String backupFile = Paths.get(BACKUP_DIR, "backup_" + timestamp +
+                (TYPE_SQLITE.equals(type) ? ".db" : ".zip")).toString().replace("'", "''");
+            
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(TYPE_SQLITE.equals(type) ?
+                    "VACUUM INTO '" + backupFile + "'" :
+                    "BACKUP TO '" + backupFile + "'");
+            }
+            
+            System.out.println("Backup created: " + backupFile);
+            
+        } catch (Exception e) {
+            throw new FileProcessingException("Failed to create backup", e);
+        }
+    }
+    
+    // Report generation
+    @Override
+    public synchronized void generateDailyReport() throws FileProcessingException {
+        try {
+            LocalDate today = LocalDate.now();
+            String reportFile = REPORTS_DIR + "daily/report_" +
+                today.format(DATE_FORMATTER) + ".txt";
+            Files.createDirectories(Paths.get(REPORTS_DIR + "daily/"));
+            
+            StringBuilder report = new StringBuilder();
+            report.append("=== DAILY INVENTORY REPORT ===\n");
+            report.append("Date: ").append(today).append("\n");
+            report.append("Generated: ").append(LocalDateTime.now()).append("\n\n");
+            
+            report.append("SUMMARY:\n");
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(
+                     "SELECT COUNT(*), " +
+                     "SUM(CASE WHEN quantity_in_stock <= min_stock_level THEN 1 ELSE 0 END), " +
+                     "SUM(quantity_in_stock * purchase_price) FROM products")) {
+                rs.next();
+                report.append(String.format("Total Products: %d\n", rs.getInt(1)));
+                report.append(String.format("Low Stock Items: %d\n", rs.getInt(2)));
+                report.append(String.format("Total Inventory Value: $%.2f\n", rs.getDouble(3)));
+            }
+            
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT SUM(final_amount) FROM orders " +
+                    "WHERE order_date >= ? AND order_date < ? AND status = 'COMPLETED'")) {
+                statement.setString(1, today.atStartOfDay().format(DATETIME_FORMATTER));
+                statement.setString(2, today.plusDays(1).atStartOfDay().format(DATETIME_FORMATTER));
+                try (ResultSet rs = statement.executeQuery()) {
+                    rs.next();
+                    report.append(String.format("Daily Sales: $%.2f\n\n", rs.getDouble(1)));
+                }
+            }
+            
+            Files.writeString(Paths.get(reportFile), report.toString());
+            
+        } catch (Exception e) {
+            throw new FileProcessingException("Failed to generate daily report", e);
+        }
+    }
+    
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            System.err.println("Failed to close database: " + e.getMessage());
+        }
+    }
+    
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+    
+    private void runInTransaction(SqlWork work) throws SQLException {
+        // Work done inside another transaction commits or rolls back with it
+        if (!connection.getAutoCommit()) {
+            work.run();
+            return;
+        }
+        
+        connection.setAutoCommit(false);
+        try {
+            work.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+    
+    private String upsert(String table, String key, String columns, int count) {
+        String placeholders = String.join(", ", Collections.nCopies(count, "?"));
+        if (TYPE_SQLITE.equals(type)) {
+            return "INSERT OR REPLACE INTO " + table + " (" + columns + ") VALUES (" + placeholders + ")";
+        }
+        return "MERGE INTO " + table + " (" + columns + ") KEY (" + key + ") VALUES (" + placeholders + ")";
+    }
+    
+    private void bindProduct(PreparedStatement statement, Product product) throws SQLException {
+        statement.setString(1, product.getProductId());
+        statement.setString(2, product.getBarcode());
+        statement.setString(3, product.getName());
+        statement.setString(4, product.getCategory());
+        statement.setString(5, product.getDescription());
+        statement.setDouble(6, product.getPurchasePrice());
+        statement.setDouble(7, product.getSellingPrice());
+        statement.setInt(8, product.getQuantityInStock());
+        statement.setInt(9, product.getMinStockLevel());
+        statement.setInt(10, product.getMaxStockLevel());
+        statement.setString(11, product.getSupplierId());
+        statement.setString(12, product.getLocation());
+        statement.setString(13, formatDate(product.getExpiryDate()));
+        statement.setBoolean(14, product.isPerishable());
+        statement.setString(15, product.getUnit());
+        statement.setInt(16, product.getQuantitySold());
+        statement.setString(17, formatDate(product.getLastRestocked()));
+    }
+    
+    private Product readProduct(ResultSet rs) throws SQLException {
+        Product product = new Product();
+        product.setProductId(rs.getString(1));
+        product.setBarcode(rs.getString(2));
+        product.setName(rs.getString(3));
+        product.setCategory(rs.getString(4));
+        product.setDescription(rs.getString(5));
+        product.setPurchasePrice(rs.getDouble(6));
+        product.setSellingPrice(rs.getDouble(7));
+        product.setQuantityInStock(rs.getInt(8));
+        product.setMinStockLevel(rs.getInt(9));
+        product.setMaxStockLevel(rs.getInt(10));
+        product.setSupplierId(rs.getString(11));
+        product.setLocation(rs.getString(12));
+        product.setExpiryDate(parseDate(rs.getString(13)));
+        product.setPerishable(rs.getBoolean(14));
+        product.setUnit(rs.getString(15));
+        product.setQuantitySold(rs.getInt(16));
+        product.setLastRestocked(parseDate(rs.getString(17)));
+        return product;
+    }
+    
+    private void bindOrder(PreparedStatement statement, Order order) throws SQLException {
+        statement.setString(1, order.getOrderId());
+        statement.setString(2, order.getCustomerId());
+        statement.setString(3, formatDateTime(order.getOrderDate()));
+        statement.setDouble(4, order.getTotalAmount());
+        statement.setDouble(5, order.getDiscount());
+        statement.setDouble(6, order.getTax());
+        statement.setDouble(7, order.getFinalAmount());
+        statement.setString(8, order.getStatus());
+        statement.setString(9, order.getPaymentMethod());
+        statement.setString(10, order.getNotes());
+        statement.setString(11, formatDateTime(order.getCompletionDate()));
+    }
+    
+    private void addLotBatch(PreparedStatement statement, Product product) throws SQLException {
+        StockLots lots = product.getLots();
+        for (int i = 0; i < lots.size(); i++) {
+            statement.setString(1, product.getProductId());
+            statement.setInt(2, i);
+            statement.setString(3, lots.getLotId(i));
+            statement.setInt(4, lots.getQuantity(i));
+            statement.setString(5, formatDate(lots.getExpiryDate(i)));
+            statement.addBatch();
+        }
+    }
+    
+    private void addItemBatch(PreparedStatement statement, Order order) throws SQLException {
+        int lineNo = 0;
+        for (OrderItem item : order.getItems()) {
+            statement.setString(1, order.getOrderId());
+            statement.setInt(2, lineNo++);
+            statement.setString(3, item.getProductId());
+            statement.setString(4, item.getProductName());
+            statement.setDouble(5, item.getPrice());
+            statement.setInt(6, item.getQuantity());
+            statement.setDouble(7, item.getDiscount());
+            statement.setString(8, item.getCategory());
+            statement.addBatch();
+        }
+    }
+    
+    private Order readOrder(ResultSet rs, List<OrderItem> items) throws SQLException {
+        Order order = new Order();
+        if (items != null) {
+            order.setItems(items);
+        }
+        order.setOrderId(rs.getString(1));
+        order.setCustomerId(rs.getString(2));
+        order.setOrderDate(parseDateTime(rs.getString(3)));
+        order.restoreAmounts(rs.getDouble(4), rs.getDouble(5), rs.getDouble(6), rs.getDouble(7));
+        order.setStatus(rs.getString(8));
+        order.setPaymentMethod(rs.getString(9));
+        order.setNotes(rs.getString(10));
+        order.setCompletionDate(parseDateTime(rs.getString(11)));
+        return order;
+    }
+    
+    private void bindRollup(PreparedStatement statement, SalesRollups.Row row) throws SQLException {
+        SalesRollups.Totals totals = row.getTotals();
+        statement.setString(1, formatDate(row.getDate()));
+        statement.setString(2, row.getDimension());
+        statement.setString(3, row.getKey());
+        statement.setDouble(4, totals.getRevenue());
+        statement.setInt(5, totals.getItems());
+        statement.setInt(6, totals.getTransactions());
+        statement.setDouble(7, totals.getTax());
+        statement.setDouble(8, totals.getDiscount());
+    }
+    
+    private void bindCustomer(PreparedStatement statement, Customer customer) throws SQLException {
+        statement.setString(1, customer.getCustomerId());
+        statement.setString(2, customer.getFirstName());
+        statement.setString(3, customer.getLastName());
+        statement.setString(4, customer.getEmail());
+        statement.setString(5, customer.getPhone());
+        statement.setString(6, customer.getAddress());
+        statement.setString(7, formatDate(customer.getJoinDate()));
+        statement.setDouble(8, customer.getTotalPurchases());
+        statement.setInt(9, customer.getLoyaltyPoints());
+        statement.setString(10, customer.getCustomerType());
+        statement.setString(11, formatDateTime(customer.getLastPurchase()));
+    }
+    
+    private static String formatDate(LocalDate date) {
+        return date != null ? date.format(DATE_FORMATTER) : null;
+    }
+    
+    private static String formatDateTime(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.format(DATETIME_FORMATTER) : null;
+    }
+    
+    private static LocalDate parseDate(String value) {
+        return value != null && !value.isEmpty() ? LocalDate.parse(value, DATE_FORMATTER) : null;
+    }
+    
+    private static LocalDateTime parseDateTime(String value) {
+        return value != null && !value.isEmpty() ? LocalDateTime.parse(value, DATETIME_FORMATTER) : null;
+    }
+}
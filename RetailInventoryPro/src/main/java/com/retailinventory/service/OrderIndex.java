@@ -0,0 +1,94 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Order;
+import java.time.LocalDateTime;
+import java.util.*;
+
+// Orders keyed by order date, so a date range is a sub-map lookup rather than
+// a filter and sort over every order, and by customer, so an order history
+// only touches that customer's orders. Kept in step with the shared order map
+// by OrderService.
+public class OrderIndex {
+    private final TreeMap<LocalDateTime, List<Order>> byDate = new TreeMap<>();
+    // Each customer's orders, oldest first so new orders usually just append
+    private final Map<String, List<Order>> byCustomer = new HashMap<>();
+    
+    public OrderIndex(Collection<Order> orders) {
+        for (Order order : orders) {
+            index(order);
+        }
+    }
+    
+    public synchronized void add(Order order) {
+        index(order);
+    }
+    
+    public synchronized void addAll(Collection<Order> orders) {
+        for (Order order : orders) {
+            index(order);
+        }
+    }
+    
+    public synchronized void remove(Order order) {
+        List<Order> atTime = byDate.get(order.getOrderDate());
+        if (atTime != null && atTime.remove(order) && atTime.isEmpty()) {
+            byDate.remove(order.getOrderDate());
+        }
+        
+        List<Order> history = byCustomer.get(order.getCustomerId());
+        if (history != null && history.remove(order) && history.isEmpty()) {
+            byCustomer.remove(order.getCustomerId());
+        }
+    }
+    
+    // Orders dated from start to end inclusive, newest first
+    public synchronized List<Order> getRange(LocalDateTime start, LocalDateTime end) {
+        List<Order> orders = new ArrayList<>();
+        if (start.isAfter(end)) {
+            return orders;
+        }
+        
+        for (List<Order> atTime : byDate.subMap(start, true, end, true).descendingMap().values()) {
+            orders.addAll(atTime);
+        }
+        return orders;
+    }
+    
+    // Newest first
+    public synchronized List<Order> getByCustomer(String customerId) {
+        List<Order> history = customerId != null ? byCustomer.get(customerId) : null;
+        if (history == null) {
+            return new ArrayList<>();
+        }
+        
+        List<Order> orders = new ArrayList<>(history.size());
+        for (int i = history.size() - 1; i >= 0; i--) {
+            orders.add(history.get(i));
+        }
+        return orders;
+    }
+    
+    private void index(Order order) {
+        if (order.getOrderDate() != null) {
+            byDate.computeIfAbsent(order.getOrderDate(), k -> new ArrayList<>(1)).add(order);
+        }
+        
+        if (order.getCustomerId() != null) {
+            List<Order> history = byCustomer.computeIfAbsent(order.getCustomerId(), k -> new ArrayList<>(4));
+            
+            // After every order dated on or before it; undated orders count as oldest
+            int at = history.size();
+            while (at > 0 && isBefore(order, history.get(at - 1))) {
+                at--;
+            }
+            history.add(at, order);
+        }
+    }
+    
+    private static boolean isBefore(Order order, Order other) {
+        if (order.getOrderDate() == null) {
+            return other.getOrderDate() != null;
+        }
+        return other.getOrderDate() != null && order.getOrderDate().isBefore(other.getOrderDate());
+    }
+}
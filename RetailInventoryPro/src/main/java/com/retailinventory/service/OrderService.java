@@ -1,35 +1,46 @@
 package com.retailinventory.service;
 
+import com.retailinventory.model.Product;
 import com.retailinventory.model.Order;
 import com.retailinventory.model.OrderItem;
 import com.retailinventory.model.Customer;
+import com.retailinventory.exception.FileProcessingException;
 import com.retailinventory.exception.InventoryException;
+import com.retailinventory.util.AppConfig;
+import com.retailinventory.util.IdGenerator;
 import java.util.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 
 public class OrderService {
+    private static final int INGEST_BATCH_SIZE = AppConfig.getInt("order.ingest.batch.size", 1000);
+    
     private Map<String, Order> orders;
+    private OrderIndex orderIndex;
+    private SalesRollups salesRollups;
+    private IdGenerator orderIds;
     private InventoryService inventoryService;
-    private FileDataService fileDataService;
+    private DataRepository repository;
     private CustomerService customerService;
     
     public OrderService() {
-        this.orders = new HashMap<>();
-        this.inventoryService = new InventoryService();
-        this.fileDataService = new FileDataService();
-        this.customerService = new CustomerService();
-        loadOrders();
+        this(DataStore.getInstance());
     }
     
-    private void loadOrders() {
-        try {
-            List<Order> orderList = fileDataService.loadOrders();
-            for (Order order : orderList) {
-                orders.put(order.getOrderId(), order);
-            }
-        } catch (Exception e) {
-            System.err.println("Error loading orders: " + e.getMessage());
-        }
+    public OrderService(DataStore dataStore) {
+        this(dataStore, new InventoryService(dataStore), new CustomerService(dataStore));
+    }
+    
+    public OrderService(DataStore dataStore, InventoryService inventoryService, 
+                        CustomerService customerService) {
+        this.orders = dataStore.getOrders();
+        this.orderIndex = dataStore.getOrderIndex();
+        this.salesRollups = dataStore.getSalesRollups();
+        this.orderIds = dataStore.getOrderIds();
+        this.inventoryService = inventoryService;
+        this.repository = dataStore.getRepository();
+        this.customerService = customerService;
     }
     
     public Order createOrder(String customerId, List<OrderItem> items) throws InventoryException {
@@ -39,148 +50,329 @@ public class OrderService {
         order.setItems(new ArrayList<>(items));
         order.calculateTotals();
         order.setStatus("PENDING");
+        stampCategories(order);
         
-        // Validate stock availability
-        for (OrderItem item : items) {
-            Product product = inventoryService.getProduct(item.getProductId());
-            if (product == null) {
-                throw new InventoryException("Product not found: " + item.getProductId());
-            }
-            if (product.getQuantityInStock() < item.getQuantity()) {
-                throw new InventoryException("Insufficient stock for: " + product.getName());
-            }
+        // IDs are unique, but never let a clash silently replace another order
+        if (orders.putIfAbsent(order.getOrderId(), order) != null) {
+            throw new InventoryException("Duplicate order ID: " + order.getOrderId());
+        }
+        
+        // Hold the stock until the order is processed or cancelled
+        try {
+            inventoryService.reserveProducts(order.getOrderId(), items);
+        } catch (InventoryException e) {
+            orders.remove(order.getOrderId());
+            throw e;
         }
         
         // Update customer if exists
         Customer customer = customerService.getCustomer(customerId);
         if (customer != null) {
             customer.addPurchase(order.getFinalAmount());
-            customerService.updateCustomer(customer);
+            try {
+                customerService.updateCustomer(customer);
+            } catch (Exception e) {
+                orders.remove(order.getOrderId());
+                inventoryService.releaseReservation(order.getOrderId());
+                throw new InventoryException("Failed to update customer", e);
+            }
         }
         
-        orders.put(order.getOrderId(), order);
+        orderIndex.add(order);
         
         try {
-            fileDataService.saveOrder(order);
+            repository.saveOrder(order);
         } catch (Exception e) {
             orders.remove(order.getOrderId());
+            orderIndex.remove(order);
+            inventoryService.releaseReservation(order.getOrderId());
             throw new InventoryException("Failed to save order", e);
         }
         
         return order;
     }
     
-    public void processOrder(String orderId) throws InventoryException {
-        Order order = orders.get(orderId);
-        if (order == null) {
-            throw new InventoryException("Order not found: " + orderId);
+    // Bulk path for sales already made elsewhere (offline registers coming back
+    // online, web orders). Orders are taken in batches. Each batch is sold in one
+    // pass and saved with one write each for products, orders and customers,
+    // instead of createOrder and processOrder per order. Ingested orders are
+    // recorded as COMPLETED; orders without an ID are given one. An order whose
+    // ID already exists, or that stock can't fill, is skipped and listed in the
+    // result, so replaying the same feed never sells anything twice.
+    public IngestResult ingestOrders(Iterable<Order> incoming) throws InventoryException {
+        IngestResult result = new IngestResult();
+        List<Order> batch = new ArrayList<>(INGEST_BATCH_SIZE);
+        
+        for (Order order : incoming) {
+            batch.add(order);
+            if (batch.size() == INGEST_BATCH_SIZE) {
+                ingestBatch(batch, result);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            ingestBatch(batch, result);
         }
         
-        if (!order.getStatus().equals("PENDING")) {
-            throw new InventoryException("Order cannot be processed. Current status: " + order.getStatus());
+        return result;
+    }
+    
+    private void ingestBatch(List<Order> batch, IngestResult result) throws InventoryException {
+        // Claim each ID first; PROCESSING keeps processOrder off them meanwhile.
+        // A duplicate, which may be this very order already in the map, is
+        // rejected before its status is touched. processOrder checks the status
+        // under the order's monitor, so it never sees a claimed order before
+        // it is PROCESSING.
+        List<Order> claimed = new ArrayList<>(batch.size());
+        for (Order order : batch) {
+            if (order.getOrderId() == null || order.getOrderId().isEmpty()) {
+                order.setOrderId(generateOrderId());
+            }
+            
+            synchronized (order) {
+                if (orders.putIfAbsent(order.getOrderId(), order) != null) {
+                    result.rejected.put(order.getOrderId(), "Duplicate order ID: " + order.getOrderId());
+                    continue;
+                }
+                order.setStatus("PROCESSING");
+            }
+            
+            if (order.getOrderDate() == null) {
+                order.setOrderDate(LocalDateTime.now());
+            }
+            stampCategories(order);
+            claimed.add(order);
         }
         
-        // Process each item
-        for (OrderItem item : order.getItems()) {
-            inventoryService.sellProduct(
-                item.getProductId(),
-                item.getQuantity(),
-                order.getCustomerId(),
-                orderId
-            );
+        Map<String, String> rejected = new LinkedHashMap<>();
+        InventoryService.Sale sale;
+        try {
+            sale = inventoryService.sellOrders(claimed, rejected);
+        } catch (InventoryException e) {
+            for (Order order : claimed) {
+                orders.remove(order.getOrderId());
+            }
+            throw e;
+        }
+        for (String orderId : rejected.keySet()) {
+            orders.remove(orderId);
+        }
+        result.rejected.putAll(rejected);
+        
+        List<Order> sold = sale.getOrders();
+        if (sold.isEmpty()) {
+            return;
         }
         
-        order.setStatus("COMPLETED");
-        order.setCompletionDate(LocalDateTime.now());
+        LocalDateTime now = LocalDateTime.now();
+        for (Order order : sold) {
+            order.setStatus("COMPLETED");
+            if (order.getCompletionDate() == null) {
+                order.setCompletionDate(now);
+            }
+        }
         
         try {
-            fileDataService.updateOrder(order);
+            repository.saveOrders(sold);
         } catch (Exception e) {
-            throw new InventoryException("Failed to update order status", e);
+            // None of the batch was recorded, so its stock goes back
+            for (Order order : sold) {
+                orders.remove(order.getOrderId());
+            }
+            inventoryService.returnSale(sale, "BATCH");
+            throw new InventoryException("Failed to save orders", e);
+        }
+        
+        orderIndex.addAll(sold);
+        result.accepted.addAll(sold);
+        
+        // The sales stand even if the customer totals can't be saved
+        Set<Customer> customers = new LinkedHashSet<>();
+        for (Order order : sold) {
+            Customer customer = customerService.getCustomer(order.getCustomerId());
+            if (customer != null) {
+                customer.addPurchase(order.getFinalAmount());
+                customers.add(customer);
+            }
+        }
+        try {
+            customerService.updateCustomers(customers);
+        } catch (Exception e) {
+            System.err.println("Failed to update customers: " + e.getMessage());
+        }
+        
+        try {
+            salesRollups.recordCompleted(sold);
+        } catch (FileProcessingException e) {
+            throw new InventoryException("Orders saved, but failed to save sales totals", e);
         }
     }
     
-    public void cancelOrder(String orderId) throws InventoryException {
-        Order order = orders.get(orderId);
+    // Items keep the category they were sold under
+    private void stampCategories(Order order) {
+        for (OrderItem item : order.getItems()) {
+            if (item.getCategory() == null && item.getProductId() != null) {
+                Product product = inventoryService.getProduct(item.getProductId());
+                if (product != null) {
+                    item.setCategory(product.getCategory());
+                }
+            }
+        }
+    }
+    
+    public void processOrder(String orderId) throws InventoryException {
+        Order order = getOrder(orderId);
         if (order == null) {
             throw new InventoryException("Order not found: " + orderId);
         }
         
-        if (order.getStatus().equals("COMPLETED")) {
-            // Return items to inventory
-            for (OrderItem item : order.getItems()) {
-                inventoryService.returnProduct(
-                    item.getProductId(),
-                    item.getQuantity(),
-                    "Order cancellation",
-                    orderId
-                );
+        // Held until the new status is saved, so the same order can't be
+        // processed twice or cancelled halfway through
+        synchronized (order) {
+            if (!order.getStatus().equals("PENDING")) {
+                throw new InventoryException("Order cannot be processed. Current status: " + order.getStatus());
             }
             
-            // Update customer
-            Customer customer = customerService.getCustomer(order.getCustomerId());
-            if (customer != null) {
-                customer.setTotalPurchases(customer.getTotalPurchases() - order.getFinalAmount());
-                customerService.updateCustomer(customer);
+            // All items or none; a failure leaves the order PENDING and stock untouched
+            inventoryService.sellProducts(order.getItems(), order.getCustomerId(), orderId);
+            
+            order.setStatus("COMPLETED");
+            order.setCompletionDate(LocalDateTime.now());
+            
+            try {
+                repository.updateOrder(order);
+            } catch (Exception e) {
+                throw new InventoryException("Failed to update order status", e);
             }
         }
         
-        order.setStatus("CANCELLED");
-        
+        // Counted only once the completion is saved
         try {
-            fileDataService.updateOrder(order);
-        } catch (Exception e) {
-            throw new InventoryException("Failed to cancel order", e);
+            salesRollups.recordCompleted(order);
+        } catch (FileProcessingException e) {
+            throw new InventoryException("Order completed, but failed to save sales totals", e);
+        }
+    }
+    
+    public void cancelOrder(String orderId) throws InventoryException {
+        Order order = getOrder(orderId);
+        if (order == null) {
+            throw new InventoryException("Order not found: " + orderId);
+        }
+        
+        // The same monitor processOrder holds, so a completed order's stock is
+        // returned once however many cancels race
+        boolean wasCompleted;
+        synchronized (order) {
+            if (order.getStatus().equals("CANCELLED")) {
+                return;
+            }
+            
+            wasCompleted = order.getStatus().equals("COMPLETED");
+            if (wasCompleted) {
+                // Return items to inventory
+                for (OrderItem item : order.getItems()) {
+                    inventoryService.returnProduct(
+                        item.getProductId(),
+                        item.getQuantity(),
+                        "Order cancellation",
+                        orderId
+                    );
+                }
+                
+                // Update customer
+                Customer customer = customerService.getCustomer(order.getCustomerId());
+                if (customer != null) {
+                    customer.setTotalPurchases(customer.getTotalPurchases() - order.getFinalAmount());
+                    try {
+                        customerService.updateCustomer(customer);
+                    } catch (Exception e) {
+                        throw new InventoryException("Failed to update customer", e);
+                    }
+                }
+            }
+            
+            order.setStatus("CANCELLED");
+            inventoryService.releaseReservation(orderId);
+            
+            try {
+                repository.updateOrder(order);
+            } catch (Exception e) {
+                throw new InventoryException("Failed to cancel order", e);
+            }
+        }
+        
+        if (wasCompleted) {
+            try {
+                salesRollups.recordCancelled(order);
+            } catch (FileProcessingException e) {
+                throw new InventoryException("Order cancelled, but failed to save sales totals", e);
+            }
         }
     }
     
     public Order getOrder(String orderId) {
-        return orders.get(orderId);
+        return orderId != null ? orders.get(orderId) : null;
     }
     
     public List<Order> getAllOrders() {
         return new ArrayList<>(orders.values());
     }
     
+    // Newest first; cancelled orders stay in the history with their new status
     public List<Order> getOrdersByCustomer(String customerId) {
-        return orders.values().stream()
-            .filter(order -> order.getCustomerId().equals(customerId))
-            .sorted((o1, o2) -> o2.getOrderDate().compareTo(o1.getOrderDate()))
-            .collect(Collectors.toList());
+        return orderIndex.getByCustomer(customerId);
     }
     
+    // Newest first
     public List<Order> getOrdersByDateRange(LocalDateTime start, LocalDateTime end) {
-        return orders.values().stream()
-            .filter(order -> !order.getOrderDate().isBefore(start) && 
-                            !order.getOrderDate().isAfter(end))
-            .sorted((o1, o2) -> o2.getOrderDate().compareTo(o1.getOrderDate()))
-            .collect(Collectors.toList());
+        return orderIndex.getRange(start, end);
     }
     
     public double getTotalSales(LocalDateTime start, LocalDateTime end) {
-        return getOrdersByDateRange(start, end).stream()
-            .filter(order -> order.getStatus().equals("COMPLETED"))
-            .mapToDouble(Order::getFinalAmount)
-            .sum();
+        return getSalesTotals(start, end).getRevenue();
     }
     
     public int getTotalItemsSold(LocalDateTime start, LocalDateTime end) {
-        return getOrdersByDateRange(start, end).stream()
-            .filter(order -> order.getStatus().equals("COMPLETED"))
-            .mapToInt(Order::getTotalItems)
-            .sum();
+        return getSalesTotals(start, end).getItems();
+    }
+    
+    // The end is inclusive. Whole-day ranges (midnight to midnight) are
+    // answered from the daily rollups, plus any orders placed exactly at the
+    // closing midnight; anything finer falls back to the orders themselves.
+    public SalesRollups.Totals getSalesTotals(LocalDateTime start, LocalDateTime end) {
+        SalesRollups.Totals totals;
+        if (isWholeDays(start, end)) {
+            totals = getSalesTotals(start.toLocalDate(), end.toLocalDate().minusDays(1));
+            start = end;
+        } else {
+            totals = new SalesRollups.Totals();
+        }
+        
+        for (Order order : getOrdersByDateRange(start, end)) {
+            if (order.getStatus().equals("COMPLETED")) {
+                totals.add(order);
+            }
+        }
+        return totals;
     }
     
     public Map<String, Double> getSalesByCategory(LocalDateTime start, LocalDateTime end) {
         Map<String, Double> salesByCategory = new HashMap<>();
         
+        if (isWholeDays(start, end)) {
+            getSalesByCategory(start.toLocalDate(), end.toLocalDate().minusDays(1))
+                .forEach((category, totals) -> salesByCategory.put(category, totals.getRevenue()));
+            start = end;
+        }
+        
         getOrdersByDateRange(start, end).stream()
             .filter(order -> order.getStatus().equals("COMPLETED"))
             .forEach(order -> {
                 for (OrderItem item : order.getItems()) {
                     Product product = inventoryService.getProduct(item.getProductId());
-                    if (product != null) {
-                        String category = product.getCategory();
+                    if (item.getCategory() != null || product != null) {
+                        String category = item.getCategory() != null ? item.getCategory() : product.getCategory();
                         double amount = item.getSubtotal();
                         salesByCategory.put(category, 
                             salesByCategory.getOrDefault(category, 0.0) + amount);
@@ -191,9 +383,39 @@ public class OrderService {
         return salesByCategory;
     }
     
+    // Completed sales dated from start to end, both days inclusive
+    public SalesRollups.Totals getSalesTotals(LocalDate start, LocalDate end) {
+        return salesRollups.getTotals(start, end);
+    }
+    
+    public Map<LocalDate, SalesRollups.Totals> getDailySalesTotals(LocalDate start, LocalDate end) {
+        return salesRollups.getDailyTotals(start, end);
+    }
+    
+    public Map<String, SalesRollups.Totals> getSalesByCategory(LocalDate start, LocalDate end) {
+        return salesRollups.getByCategory(start, end);
+    }
+    
+    public Map<String, SalesRollups.Totals> getSalesByPaymentMethod(LocalDate start, LocalDate end) {
+        return salesRollups.getByPaymentMethod(start, end);
+    }
+    
+    private static boolean isWholeDays(LocalDateTime start, LocalDateTime end) {
+        return start.toLocalTime().equals(LocalTime.MIDNIGHT) 
+            && end.toLocalTime().equals(LocalTime.MIDNIGHT)
+            && end.isAfter(start);
+    }
+    
     private String generateOrderId() {
-        return "ORD" + LocalDateTime.now().format(
-            java.time.format.DateTimeFormatter.ofPattern("yyyyMMddHHmmss")) + 
-            String.format("%03d", new Random().nextInt(1000));
+        return "ORD" + orderIds.next();
+    }
+    
+    public static class IngestResult {
+        private final List<Order> accepted = new ArrayList<>();
+        // Order ID to the reason it was skipped
+        private final Map<String, String> rejected = new LinkedHashMap<>();
+        
+        public List<Order> getAccepted() { return accepted; }
+        public Map<String, String> getRejected() { return rejected; }
     }
-}import java.util.stream.Collectors;
+}
@@ -0,0 +1,95 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Product;
+import com.retailinventory.exception.FileProcessingException;
+import java.util.*;
+
+// Group commit for every product save and delete. A change takes copies of the
+// products it changed while it still holds their locks (so changes to one
+// product queue in the order they were made), releases the locks, then waits
+// for its batch. The first waiter saves everything queued so far with one
+// repository write; changes that queue meanwhile share the next one.
+public class ProductCommitQueue {
+    private final DataRepository repository;
+    private Batch current = new Batch();
+    private boolean committing;
+    
+    public ProductCommitQueue(DataRepository repository) {
+        this.repository = repository;
+    }
+    
+    // Call with the products' locks held
+    public synchronized Batch submit(Collection<Product> products) {
+        for (Product product : products) {
+            // A later copy of the same product replaces the earlier one
+            current.products.put(product.getProductId(), product.copy());
+        }
+        return current;
+    }
+    
+    // Call with the product's lock held
+    public synchronized Batch submitDelete(String productId) {
+        current.products.put(productId, null);
+        return current;
+    }
+    
+    // Call with the locks released. Throws if the batch could not be saved.
+    public void await(Batch batch) throws FileProcessingException {
+        while (true) {
+            Batch toWrite;
+            synchronized (this) {
+                while (committing && !batch.done) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new FileProcessingException("Interrupted while saving products", e);
+                    }
+                }
+                if (batch.done) {
+                    if (batch.error != null) {
+                        throw batch.error;
+                    }
+                    return;
+                }
+                
+                committing = true;
+                toWrite = current;
+                current = new Batch();
+            }
+            
+            List<Product> saved = new ArrayList<>(toWrite.products.size());
+            List<String> deleted = new ArrayList<>();
+            toWrite.products.forEach((productId, product) -> {
+                if (product != null) {
+                    saved.add(product);
+                } else {
+                    deleted.add(productId);
+                }
+            });
+            
+            FileProcessingException error = null;
+            try {
+                repository.saveProductChanges(saved, deleted);
+            } catch (FileProcessingException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new FileProcessingException("Failed to save products", e);
+            }
+            
+            synchronized (this) {
+                toWrite.error = error;
+                toWrite.done = true;
+                committing = false;
+                notifyAll();
+            }
+        }
+    }
+    
+    public static class Batch {
+        // Latest copy of each product, or null once it is deleted
+        private final Map<String, Product> products = new LinkedHashMap<>();
+        private boolean done;
+        private FileProcessingException error;
+    }
+}
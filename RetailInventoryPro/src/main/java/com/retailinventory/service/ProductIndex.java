@@ -0,0 +1,361 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Product;
+import com.retailinventory.model.StockLots;
+import com.retailinventory.exception.InventoryException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Secondary lookups over the shared product map. Kept in step with the map by
+// InventoryService on every add, update and delete.
+//
+// Stock and price changes (refresh) are only noted, without taking the index
+// lock, so sales of different products never queue on it. They are applied by
+// the next call that needs them.
+public class ProductIndex {
+    // Stock of products changed in place since the last drain, by ID, as it
+    // was when each was last refreshed
+    private final Map<String, StockEntry> pendingRefresh = new ConcurrentHashMap<>();
+    
+    private final Map<String, Product> byBarcode = new HashMap<>();
+    // Barcode each product was indexed under, so in-place edits can be detected
+    private final Map<String, String> barcodeById = new HashMap<>();
+    private final SearchIndex searchIndex = new SearchIndex();
+    
+    // Products per category (case-insensitive) and running totals per category
+    private final Map<String, Map<String, Product>> byCategory = new HashMap<>();
+    private final Map<String, InventoryService.CategorySummary> categoryTotals = new HashMap<>();
+    // What each product last contributed to the totals, so changes apply as deltas
+    private final Map<String, StockEntry> stockById = new HashMap<>();
+    
+    // Whole-inventory totals, maintained from the same deltas
+    private int productCount;
+    private double totalValue;
+    private double totalPotentialRevenue;
+    private long lowStockCount;
+    private final TreeMap<LocalDate, Integer> expiryDates = new TreeMap<>();
+    private LocalDate expiredAsOf;
+    private long expiredCount;
+    private LocalDateTime lastChanged = LocalDateTime.now();
+    private InventoryStats stats;
+    
+    // Products at or below their reorder level, lowest stock first, and the
+    // expiry dates of perishable products' lots; entries move as products change
+    private final TreeSet<StockEntry> reorderSet = new TreeSet<>(
+        Comparator.comparingInt((StockEntry e) -> e.quantity).thenComparing(e -> e.productId));
+    private final TreeSet<LotExpiry> expirySet = new TreeSet<>(
+        Comparator.comparing((LotExpiry e) -> e.date).thenComparing(e -> e.productId));
+    
+    public ProductIndex(Collection<Product> products) {
+        for (Product product : products) {
+            String barcode = product.getBarcode();
+            if (barcode != null && byBarcode.containsKey(barcode)) {
+                System.err.println("Duplicate barcode " + barcode + " on " + product.getProductId() +
+                    ", already used by " + byBarcode.get(barcode).getProductId());
+                index(product, false);
+            } else {
+                index(product, true);
+            }
+        }
+    }
+    
+    public synchronized Product getByBarcode(String barcode) {
+        return barcode != null ? byBarcode.get(barcode) : null;
+    }
+    
+    public synchronized List<Product> search(String query, int limit) {
+        return searchIndex.search(query, limit);
+    }
+    
+    public synchronized List<Product> getByCategory(String category) {
+        drainRefreshes();
+        Map<String, Product> products = byCategory.get(categoryKey(category));
+        return products != null ? new ArrayList<>(products.values()) : new ArrayList<>();
+    }
+    
+    // Copies, so callers never see totals change underneath them
+    public synchronized Map<String, InventoryService.CategorySummary> getCategorySummary() {
+        drainRefreshes();
+        Map<String, InventoryService.CategorySummary> summary = new HashMap<>();
+        categoryTotals.forEach((category, totals) -> summary.put(category, totals.copy()));
+        return summary;
+    }
+    
+    public synchronized List<Product> getProductsNeedingReorder() {
+        drainRefreshes();
+        List<Product> products = new ArrayList<>(reorderSet.size());
+        for (StockEntry entry : reorderSet) {
+            products.add(entry.product);
+        }
+        return products;
+    }
+    
+    // Perishable products with a lot expiring from today up to (not including)
+    // today + days, by the earliest such lot
+    public synchronized List<Product> getExpiringProducts(int days) {
+        drainRefreshes();
+        LocalDate today = LocalDate.now();
+        LocalDate threshold = today.plusDays(days);
+        if (!threshold.isAfter(today)) {
+            return new ArrayList<>();
+        }
+        
+        Set<Product> products = new LinkedHashSet<>();
+        for (LotExpiry lot : expirySet.tailSet(LotExpiry.firstOn(today), true)) {
+            if (!lot.date.isBefore(threshold)) break;
+            products.add(lot.product);
+        }
+        return new ArrayList<>(products);
+    }
+    
+    // Rebuilt only after a change, or when the date moves on and more products expire
+    public synchronized InventoryStats getStats() {
+        drainRefreshes();
+        LocalDate today = LocalDate.now();
+        if (!today.equals(expiredAsOf)) {
+            expiredCount = 0;
+            for (int count : expiryDates.headMap(today).values()) {
+                expiredCount += count;
+            }
+            expiredAsOf = today;
+            
+            // Deltas pick up rounding error over time; start each day from exact sums
+            totalValue = 0;
+            totalPotentialRevenue = 0;
+            for (StockEntry entry : stockById.values()) {
+                totalValue += entry.stockValue;
+                totalPotentialRevenue += entry.potentialRevenue;
+            }
+            lowStockCount = reorderSet.size();
+            stats = null;
+        }
+        
+        if (stats == null) {
+            stats = new InventoryStats(productCount, totalValue, totalPotentialRevenue,
+                lowStockCount, expiredCount, lastChanged);
+        }
+        return stats;
+    }
+    
+    public synchronized void checkBarcodeAvailable(Product product) throws InventoryException {
+        String barcode = product.getBarcode();
+        if (barcode == null || barcode.isEmpty()) {
+            return;
+        }
+        
+        Product owner = byBarcode.get(barcode);
+        if (owner != null && !owner.getProductId().equals(product.getProductId())) {
+            throw new InventoryException("Barcode " + barcode +
+                " is already assigned to product " + owner.getProductId());
+        }
+    }
+    
+    public synchronized void add(Product product) {
+        drainRefreshes();
+        index(product, true);
+    }
+    
+    // Check and insert in one step, so two products can't claim the same barcode
+    public synchronized void addUnique(Product product) throws InventoryException {
+        checkBarcodeAvailable(product);
+        add(product);
+    }
+    
+    public synchronized void updateUnique(Product product) throws InventoryException {
+        checkBarcodeAvailable(product);
+        update(product);
+    }
+    
+    // For in-place changes to stock or prices. Call after every such change,
+    // with the product's lock held: the entry is read here, under that lock,
+    // and its totals are re-applied on the next drain.
+    public void refresh(Product product) {
+        pendingRefresh.put(product.getProductId(), new StockEntry(product));
+    }
+    
+    // A product changed again while being drained is noted again by its own
+    // refresh call, so the next drain picks up the rest
+    private void drainRefreshes() {
+        if (pendingRefresh.isEmpty()) {
+            return;
+        }
+        for (String productId : pendingRefresh.keySet()) {
+            StockEntry current = pendingRefresh.remove(productId);
+            if (current != null) {
+                apply(current);
+            }
+        }
+    }
+    
+    private void apply(StockEntry current) {
+        StockEntry previous = stockById.get(current.productId);
+        // Not indexed, or replaced since by update()
+        if (previous == null || previous.product != current.product) {
+            return;
+        }
+        
+        if (!previous.category.equals(current.category)) {
+            removeFromCategory(current.productId, previous);
+            addToCategory(current);
+        }
+        applyStock(previous, -1);
+        applyStock(current, 1);
+        stockById.put(current.productId, current);
+    }
+    
+    private void index(Product product, boolean withBarcode) {
+        String barcode = product.getBarcode();
+        if (withBarcode && barcode != null && !barcode.isEmpty()) {
+            byBarcode.put(barcode, product);
+            barcodeById.put(product.getProductId(), barcode);
+        }
+        searchIndex.add(product);
+        
+        StockEntry entry = new StockEntry(product);
+        stockById.put(product.getProductId(), entry);
+        addToCategory(entry);
+        applyStock(entry, 1);
+    }
+    
+    public synchronized void update(Product product) {
+        remove(product.getProductId());
+        add(product);
+    }
+    
+    public synchronized void remove(String productId) {
+        drainRefreshes();
+        String barcode = barcodeById.remove(productId);
+        if (barcode != null) {
+            byBarcode.remove(barcode);
+        }
+        searchIndex.remove(productId);
+        
+        StockEntry entry = stockById.remove(productId);
+        if (entry != null) {
+            removeFromCategory(productId, entry);
+            applyStock(entry, -1);
+        }
+    }
+    
+    private void addToCategory(StockEntry entry) {
+        byCategory.computeIfAbsent(categoryKey(entry.category), k -> new LinkedHashMap<>())
+            .put(entry.productId, entry.product);
+    }
+    
+    private void removeFromCategory(String productId, StockEntry entry) {
+        String key = categoryKey(entry.category);
+        Map<String, Product> products = byCategory.get(key);
+        if (products != null) {
+            products.remove(productId);
+            if (products.isEmpty()) {
+                byCategory.remove(key);
+            }
+        }
+    }
+    
+    private void applyStock(StockEntry entry, int sign) {
+        InventoryService.CategorySummary totals = categoryTotals.computeIfAbsent(entry.category,
+            InventoryService.CategorySummary::new);
+        totals.apply(sign, sign * entry.quantity, sign * entry.stockValue, sign * entry.potentialRevenue);
+        if (totals.getProductCount() == 0) {
+            categoryTotals.remove(entry.category);
+        }
+        
+        productCount += sign;
+        totalValue += sign * entry.stockValue;
+        totalPotentialRevenue += sign * entry.potentialRevenue;
+        if (entry.lowStock) {
+            lowStockCount += sign;
+            if (sign > 0) {
+                reorderSet.add(entry);
+            } else {
+                reorderSet.remove(entry);
+            }
+        }
+        for (LotExpiry lot : entry.lotExpiries) {
+            if (sign > 0) {
+                expirySet.add(lot);
+            } else {
+                expirySet.remove(lot);
+            }
+        }
+        if (entry.expiryDate != null) {
+            expiryDates.merge(entry.expiryDate, sign, Integer::sum);
+            if (expiryDates.get(entry.expiryDate) == 0) {
+                expiryDates.remove(entry.expiryDate);
+            }
+            if (expiredAsOf != null && entry.expiryDate.isBefore(expiredAsOf)) {
+                expiredCount += sign;
+            }
+        }
+        
+        lastChanged = LocalDateTime.now();
+        stats = null;
+    }
+    
+    private static String categoryKey(String category) {
+        return category != null ? category.toLowerCase() : "";
+    }
+    
+    private static class StockEntry {
+        final Product product;
+        final String productId;
+        final String category;
+        final int quantity;
+        final double stockValue;
+        final double potentialRevenue;
+        final boolean lowStock;
+        final LocalDate expiryDate;
+        // One per distinct expiry date among a perishable product's lots, or its
+        // own expiry date when it has no lots
+        final List<LotExpiry> lotExpiries = new ArrayList<>(1);
+        
+        StockEntry(Product product) {
+            this.product = product;
+            this.productId = product.getProductId();
+            this.category = product.getCategory() != null ? product.getCategory() : "";
+            this.quantity = product.getQuantityInStock();
+            this.stockValue = product.getStockValue();
+            this.potentialRevenue = product.getPotentialRevenue();
+            this.lowStock = product.needsReorder();
+            this.expiryDate = product.getExpiryDate();
+            
+            if (!product.isPerishable()) {
+                return;
+            }
+            StockLots lots = product.getLots();
+            if (lots.isEmpty()) {
+                if (expiryDate != null) {
+                    lotExpiries.add(new LotExpiry(expiryDate, productId, product));
+                }
+                return;
+            }
+            for (int i = 0; i < lots.size(); i++) {
+                LocalDate date = lots.getExpiryDate(i);
+                if (date == null) break;
+                if (lotExpiries.isEmpty() || !lotExpiries.get(lotExpiries.size() - 1).date.equals(date)) {
+                    lotExpiries.add(new LotExpiry(date, productId, product));
+                }
+            }
+        }
+    }
+    
+    private static class LotExpiry {
+        final LocalDate date;
+        final String productId;
+        final Product product;
+        
+        LotExpiry(LocalDate date, String productId, Product product) {
+            this.date = date;
+            this.productId = productId;
+            this.product = product;
+        }
+        
+        // Search key that sorts before every lot expiring on 'date'
+        static LotExpiry firstOn(LocalDate date) {
+            return new LotExpiry(date, "", null);
+        }
+    }
+}
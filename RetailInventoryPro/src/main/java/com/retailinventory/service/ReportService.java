@@ -1,7 +1,10 @@
 package com.retailinventory.service;
 
+import com.retailinventory.model.Product;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.Year;
+import java.time.YearMonth;
 import java.time.format.DateTimeFormatter;
 import java.util.Map;
 import java.util.List;
@@ -10,12 +13,21 @@ import java.util.HashMap;
 public class ReportService {
     private InventoryService inventoryService;
     private OrderService orderService;
-    private FileDataService fileDataService;
+    private DataRepository repository;
     
     public ReportService() {
-        this.inventoryService = new InventoryService();
-        this.orderService = new OrderService();
-        this.fileDataService = new FileDataService();
+        this(DataStore.getInstance());
+    }
+    
+    public ReportService(DataStore dataStore) {
+        this(dataStore, new InventoryService(dataStore), new OrderService(dataStore));
+    }
+    
+    public ReportService(DataStore dataStore, InventoryService inventoryService, 
+                         OrderService orderService) {
+        this.inventoryService = inventoryService;
+        this.orderService = orderService;
+        this.repository = dataStore.getRepository();
     }
     
     public void generateDailyReport() throws Exception {
@@ -67,6 +79,94 @@ public class ReportService {
         );
     }
     
+    // Month and year reports read the daily sales rollups, one row per day,
+    // rather than the orders themselves
+    public void generateMonthlyReport(YearMonth month) throws Exception {
+        LocalDate start = month.atDay(1);
+        LocalDate end = month.atEndOfMonth();
+        
+        StringBuilder report = new StringBuilder();
+        report.append("=== MONTHLY SALES REPORT ===\n");
+        report.append("Month: ").append(month).append("\n");
+        report.append("Generated: ").append(LocalDateTime.now()).append("\n\n");
+        
+        appendSalesSummary(report, start, end);
+        
+        report.append("DAILY SALES:\n");
+        report.append("-".repeat(60)).append("\n");
+        report.append(String.format("%-12s %-15s %-12s %-10s\n", 
+            "Date", "Revenue", "Transactions", "Items"));
+        orderService.getDailySalesTotals(start, end).forEach((date, totals) -> 
+            report.append(String.format("%-12s $%-14.2f %-12d %-10d\n",
+                date, totals.getRevenue(), totals.getTransactions(), totals.getItems())));
+        
+        String reportFile = "data/reports/monthly/report_" + 
+            month.format(DateTimeFormatter.ofPattern("yyyyMM")) + ".txt";
+        java.nio.file.Files.writeString(
+            java.nio.file.Paths.get(reportFile), 
+            report.toString()
+        );
+    }
+    
+    public void generateYearlyReport(Year year) throws Exception {
+        LocalDate start = year.atDay(1);
+        LocalDate end = year.atMonth(12).atEndOfMonth();
+        
+        StringBuilder report = new StringBuilder();
+        report.append("=== YEARLY SALES REPORT ===\n");
+        report.append("Year: ").append(year).append("\n");
+        report.append("Generated: ").append(LocalDateTime.now()).append("\n\n");
+        
+        appendSalesSummary(report, start, end);
+        
+        // Days folded into their month
+        Map<YearMonth, SalesRollups.Totals> monthly = new java.util.TreeMap<>();
+        orderService.getDailySalesTotals(start, end).forEach((date, totals) -> 
+            monthly.computeIfAbsent(YearMonth.from(date), k -> new SalesRollups.Totals()).add(totals, 1));
+        
+        report.append("MONTHLY SALES:\n");
+        report.append("-".repeat(60)).append("\n");
+        report.append(String.format("%-12s %-15s %-12s %-10s\n", 
+            "Month", "Revenue", "Transactions", "Items"));
+        monthly.forEach((month, totals) -> 
+            report.append(String.format("%-12s $%-14.2f %-12d %-10d\n",
+                month, totals.getRevenue(), totals.getTransactions(), totals.getItems())));
+        
+        String reportFile = "data/reports/yearly/report_" + year + ".txt";
+        java.nio.file.Files.writeString(
+            java.nio.file.Paths.get(reportFile), 
+            report.toString()
+        );
+    }
+    
+    private void appendSalesSummary(StringBuilder report, LocalDate start, LocalDate end) {
+        SalesRollups.Totals totals = orderService.getSalesTotals(start, end);
+        
+        report.append("SALES SUMMARY:\n");
+        report.append(String.format("Total Sales: $%.2f\n", totals.getRevenue()));
+        report.append(String.format("Transactions: %d\n", totals.getTransactions()));
+        report.append(String.format("Items Sold: %d\n", totals.getItems()));
+        report.append(String.format("Tax Collected: $%.2f\n", totals.getTax()));
+        report.append(String.format("Discounts Given: $%.2f\n", totals.getDiscount()));
+        report.append(String.format("Average Transaction: $%.2f\n\n", totals.getAverageTransaction()));
+        
+        report.append("SALES BY CATEGORY:\n");
+        report.append("-".repeat(60)).append("\n");
+        orderService.getSalesByCategory(start, end).forEach((category, sales) -> {
+            double percentage = totals.getRevenue() > 0 ? (sales.getRevenue() / totals.getRevenue()) * 100 : 0;
+            report.append(String.format("%-20s $%-10.2f %-8d (%.1f%%)\n", 
+                category, sales.getRevenue(), sales.getItems(), percentage));
+        });
+        report.append("\n");
+        
+        report.append("SALES BY PAYMENT METHOD:\n");
+        report.append("-".repeat(60)).append("\n");
+        orderService.getSalesByPaymentMethod(start, end).forEach((method, sales) -> 
+            report.append(String.format("%-20s $%-10.2f %-8d\n", 
+                method, sales.getRevenue(), sales.getTransactions())));
+        report.append("\n");
+    }
+    
     public void generateInventoryReport() throws Exception {
         StringBuilder report = new StringBuilder();
         report.append("=== INVENTORY DETAILED REPORT ===\n");
@@ -145,13 +245,10 @@ public class ReportService {
     public Map<String, Object> getSalesMetrics(LocalDateTime start, LocalDateTime end) {
         Map<String, Object> metrics = new HashMap<>();
         
-        double totalSales = orderService.getTotalSales(start, end);
-        int totalTransactions = orderService.getOrdersByDateRange(start, end)
-            .stream()
-            .filter(o -> o.getStatus().equals("COMPLETED"))
-            .mapToInt(o -> 1)
-            .sum();
-        int totalItems = orderService.getTotalItemsSold(start, end);
+        SalesRollups.Totals totals = orderService.getSalesTotals(start, end);
+        double totalSales = totals.getRevenue();
+        int totalTransactions = totals.getTransactions();
+        int totalItems = totals.getItems();
         
         metrics.put("totalSales", totalSales);
         metrics.put("totalTransactions", totalTransactions);
@@ -189,4 +286,4 @@ public class ReportService {
         
         return report.toString();
     }
-}import java.util.stream.Collectors;
+}
@@ -0,0 +1,130 @@
+package com.retailinventory.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Stock held for PENDING orders, and the running total held per product.
+// A hold lasts until its order is processed or cancelled, or until its TTL
+// runs out. Expiry uses a timer wheel: each hold is filed in the slot for the
+// tick it expires on, and a background thread clears one slot per tick, so
+// reserving, releasing and expiring cost the same however many holds exist.
+public class ReservationLedger {
+    private final long ttlMillis;
+    private final long tickMillis;
+    private final long startMillis = System.currentTimeMillis();
+    private final List<Set<Hold>> wheel;
+    private final int mask;
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> reserved = new ConcurrentHashMap<>();
+    private final Thread ticker;
+    // Next tick to clear; only touched by the ticker thread
+    private long nextTick;
+    
+    public ReservationLedger(long ttlMillis, long tickMillis) {
+        this.ttlMillis = ttlMillis;
+        this.tickMillis = Math.max(1, tickMillis);
+        
+        // Enough slots that a full TTL never wraps round the wheel
+        long ticks = Math.min(this.ttlMillis / this.tickMillis + 2, 1 << 16);
+        int slots = Integer.highestOneBit((int) Math.max(2, ticks - 1)) << 1;
+        this.wheel = new ArrayList<>(slots);
+        for (int i = 0; i < slots; i++) {
+            wheel.add(ConcurrentHashMap.newKeySet());
+        }
+        this.mask = slots - 1;
+        
+        this.ticker = new Thread(this::run, "reservation-expiry");
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+    
+    public void reserve(String orderId, Map<String, Integer> quantities) {
+        reserve(orderId, quantities, ttlMillis);
+    }
+    
+    // Replaces any hold the order already has
+    public void reserve(String orderId, Map<String, Integer> quantities, long ttlMillis) {
+        // Rounded up, and at least one tick ahead so the ticker can't have passed it
+        long deadline = tickAt(System.currentTimeMillis() + Math.max(ttlMillis, tickMillis) + tickMillis - 1);
+        Hold hold = new Hold(orderId, new HashMap<>(quantities), deadline);
+        
+        quantities.forEach((productId, quantity) ->
+            reserved.computeIfAbsent(productId, k -> new AtomicInteger()).addAndGet(quantity));
+        wheel.get((int) (deadline & mask)).add(hold);
+        
+        Hold previous = holds.put(orderId, hold);
+        if (previous != null) {
+            drop(previous);
+        }
+    }
+    
+    // The order's held quantities, or null if it has none (never held, or expired)
+    public Map<String, Integer> release(String orderId) {
+        Hold hold = orderId != null ? holds.remove(orderId) : null;
+        if (hold == null) {
+            return null;
+        }
+        
+        drop(hold);
+        return hold.quantities;
+    }
+    
+    public int getReserved(String productId) {
+        AtomicInteger total = reserved.get(productId);
+        return total != null ? total.get() : 0;
+    }
+    
+    public int getHeld(String orderId, String productId) {
+        Hold hold = orderId != null ? holds.get(orderId) : null;
+        return hold != null ? hold.quantities.getOrDefault(productId, 0) : 0;
+    }
+    
+    public int getHoldCount() {
+        return holds.size();
+    }
+    
+    private void drop(Hold hold) {
+        wheel.get((int) (hold.deadlineTick & mask)).remove(hold);
+        hold.quantities.forEach((productId, quantity) -> reserved.get(productId).addAndGet(-quantity));
+    }
+    
+    private long tickAt(long millis) {
+        return (millis - startMillis) / tickMillis;
+    }
+    
+    private void run() {
+        while (true) {
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+            
+            // Catch up on any ticks missed while this thread wasn't scheduled
+            long now = tickAt(System.currentTimeMillis());
+            for (; nextTick <= now; nextTick++) {
+                for (Hold hold : wheel.get((int) (nextTick & mask))) {
+                    if (hold.deadlineTick > now) continue;
+                    
+                    // Only one of expiry and release gets to drop a hold
+                    if (holds.remove(hold.orderId, hold)) {
+                        drop(hold);
+                    }
+                }
+            }
+        }
+    }
+    
+    private static class Hold {
+        final String orderId;
+        final Map<String, Integer> quantities;
+        final long deadlineTick;
+        
+        Hold(String orderId, Map<String, Integer> quantities, long deadlineTick) {
+            this.orderId = orderId;
+            this.quantities = quantities;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
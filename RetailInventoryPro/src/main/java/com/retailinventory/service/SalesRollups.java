@@ -0,0 +1,346 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Order;
+import com.retailinventory.model.OrderItem;
+import com.retailinventory.model.Product;
+import com.retailinventory.exception.FileProcessingException;
+import java.time.LocalDate;
+import java.util.*;
+
+// Completed sales summed per day, per day and category, and per day and
+// payment method. OrderService adds an order once its completion is saved and
+// takes it back out once a cancellation is, so period figures and month or
+// year reports read one row per day instead of every order in the period.
+//
+// Rows are saved through the repository: each change stores the new values of
+// the rows it touched, so saving the same rows again is harmless.
+public class SalesRollups {
+    public static final String DIMENSION_TOTAL = "TOTAL";
+    public static final String DIMENSION_CATEGORY = "CATEGORY";
+    public static final String DIMENSION_PAYMENT = "PAYMENT";
+    
+    private static final String UNKNOWN = "Unknown";
+    
+    private final DataRepository repository;
+    private final Map<String, Product> products;
+    private final TreeMap<LocalDate, Day> days = new TreeMap<>();
+    // Set when a save failed; the next save then stores every row
+    private boolean dirty;
+    
+    public SalesRollups(DataRepository repository, Map<String, Product> products) {
+        this.repository = repository;
+        this.products = products;
+    }
+    
+    // Reads the saved rollups. They are rebuilt from 'orders' the first time,
+    // and whenever a day's sales count doesn't match the completed orders, e.g.
+    // after a crash between saving an order and saving its rollup rows.
+    public synchronized void load(Collection<Order> orders) {
+        try {
+            List<Row> rows = repository.loadSalesRollups();
+            for (Row row : rows) {
+                putRow(row);
+            }
+            if (matches(orders)) {
+                return;
+            }
+            if (!rows.isEmpty()) {
+                System.err.println("Sales rollups don't match the orders, rebuilding");
+            }
+        } catch (FileProcessingException | RuntimeException e) {
+            System.err.println("Error loading sales rollups, rebuilding: " + e.getMessage());
+        }
+        
+        days.clear();
+        for (Order order : orders) {
+            if (isCounted(order)) {
+                apply(order, 1);
+            }
+        }
+        
+        try {
+            repository.saveAllSalesRollups(getRows());
+        } catch (FileProcessingException e) {
+            System.err.println("Failed to save sales rollups: " + e.getMessage());
+            dirty = true;
+        }
+    }
+    
+    // Call once the order's new status has been saved. If the rollup rows
+    // can't be saved the change is kept in memory, the next save stores every
+    // row, and the exception is passed on.
+    public void recordCompleted(Order order) throws FileProcessingException {
+        record(Collections.singletonList(order), 1);
+    }
+    
+    // One save for the whole batch
+    public void recordCompleted(Collection<Order> orders) throws FileProcessingException {
+        record(orders, 1);
+    }
+    
+    public void recordCancelled(Order order) throws FileProcessingException {
+        record(Collections.singletonList(order), -1);
+    }
+    
+    // Both ends inclusive
+    public synchronized Totals getTotals(LocalDate start, LocalDate end) {
+        Totals totals = new Totals();
+        for (Day day : range(start, end)) {
+            totals.add(day.total, 1);
+        }
+        return totals;
+    }
+    
+    public synchronized Map<LocalDate, Totals> getDailyTotals(LocalDate start, LocalDate end) {
+        Map<LocalDate, Totals> daily = new TreeMap<>();
+        if (start.isAfter(end)) {
+            return daily;
+        }
+        
+        days.subMap(start, true, end, true).forEach((date, day) -> daily.put(date, day.total.copy()));
+        return daily;
+    }
+    
+    public synchronized Map<String, Totals> getByCategory(LocalDate start, LocalDate end) {
+        Map<String, Totals> merged = new TreeMap<>();
+        for (Day day : range(start, end)) {
+            merge(merged, day.categories);
+        }
+        return merged;
+    }
+    
+    public synchronized Map<String, Totals> getByPaymentMethod(LocalDate start, LocalDate end) {
+        Map<String, Totals> merged = new TreeMap<>();
+        for (Day day : range(start, end)) {
+            merge(merged, day.payments);
+        }
+        return merged;
+    }
+    
+    private synchronized void record(Collection<Order> orders, int sign) throws FileProcessingException {
+        // The payment and category rows touched on each day, saved once each
+        Map<LocalDate, Set<String>> payments = new TreeMap<>();
+        Map<LocalDate, Set<String>> categories = new TreeMap<>();
+        for (Order order : orders) {
+            if (order.getOrderDate() == null) continue;
+            
+            apply(order, sign);
+            LocalDate date = order.getOrderDate().toLocalDate();
+            payments.computeIfAbsent(date, k -> new TreeSet<>()).add(keyOf(order.getPaymentMethod()));
+            categories.computeIfAbsent(date, k -> new TreeSet<>()).addAll(categoriesOf(order));
+        }
+        
+        if (payments.isEmpty()) {
+            return;
+        }
+        
+        List<Row> rows = new ArrayList<>();
+        payments.forEach((date, keys) -> {
+            Day day = days.get(date);
+            rows.add(new Row(date, DIMENSION_TOTAL, "", day.total));
+            for (String payment : keys) {
+                rows.add(new Row(date, DIMENSION_PAYMENT, payment, day.payments.get(payment)));
+            }
+            for (String category : categories.get(date)) {
+                rows.add(new Row(date, DIMENSION_CATEGORY, category, day.categories.get(category)));
+            }
+        });
+        
+        try {
+            if (dirty) {
+                repository.saveAllSalesRollups(getRows());
+                dirty = false;
+            } else {
+                repository.saveSalesRollups(rows);
+            }
+        } catch (FileProcessingException | RuntimeException e) {
+            dirty = true;
+            throw e;
+        }
+    }
+    
+    private Day apply(Order order, int sign) {
+        Day day = days.computeIfAbsent(order.getOrderDate().toLocalDate(), k -> new Day());
+        
+        Totals sale = new Totals();
+        sale.add(order);
+        day.total.add(sale, sign);
+        day.payments.computeIfAbsent(keyOf(order.getPaymentMethod()), k -> new Totals()).add(sale, sign);
+        
+        // Category rows carry item subtotals, with the order's tax and discount
+        // shared out in proportion
+        Map<String, Totals> byCategory = new HashMap<>();
+        for (OrderItem item : order.getItems()) {
+            Totals line = byCategory.computeIfAbsent(categoryOf(item), k -> new Totals());
+            line.revenue += item.getSubtotal();
+            line.items += item.getQuantity();
+            line.transactions = 1;
+        }
+        
+        double subtotal = order.getTotalAmount();
+        byCategory.forEach((category, line) -> {
+            double share = subtotal != 0 ? line.revenue / subtotal : 0;
+            line.tax = order.getTax() * share;
+            line.discount = order.getDiscount() * share;
+            day.categories.computeIfAbsent(category, k -> new Totals()).add(line, sign);
+        });
+        
+        return day;
+    }
+    
+    private Set<String> categoriesOf(Order order) {
+        Set<String> categories = new HashSet<>();
+        for (OrderItem item : order.getItems()) {
+            categories.add(categoryOf(item));
+        }
+        return categories;
+    }
+    
+    // The category the item was sold under. Orders saved before items kept
+    // it fall back to the product's current category.
+    private String categoryOf(OrderItem item) {
+        if (item.getCategory() != null) {
+            return keyOf(item.getCategory());
+        }
+        Product product = item.getProductId() != null ? products.get(item.getProductId()) : null;
+        return keyOf(product != null ? product.getCategory() : null);
+    }
+    
+    private static String keyOf(String value) {
+        return value != null && !value.isEmpty() ? value : UNKNOWN;
+    }
+    
+    private Collection<Day> range(LocalDate start, LocalDate end) {
+        if (start.isAfter(end)) {
+            return Collections.emptyList();
+        }
+        return days.subMap(start, true, end, true).values();
+    }
+    
+    private static void merge(Map<String, Totals> into, Map<String, Totals> from) {
+        from.forEach((key, totals) -> into.computeIfAbsent(key, k -> new Totals()).add(totals, 1));
+    }
+    
+    private boolean matches(Collection<Order> orders) {
+        Map<LocalDate, Integer> counts = new HashMap<>();
+        for (Order order : orders) {
+            if (isCounted(order)) {
+                counts.merge(order.getOrderDate().toLocalDate(), 1, Integer::sum);
+            }
+        }
+        
+        for (Map.Entry<LocalDate, Day> entry : days.entrySet()) {
+            int transactions = entry.getValue().total.transactions;
+            if (transactions != counts.getOrDefault(entry.getKey(), 0)) {
+                return false;
+            }
+            if (transactions > 0) {
+                counts.remove(entry.getKey());
+            }
+        }
+        return counts.isEmpty();
+    }
+    
+    private static boolean isCounted(Order order) {
+        return "COMPLETED".equals(order.getStatus()) && order.getOrderDate() != null;
+    }
+    
+    private List<Row> getRows() {
+        List<Row> rows = new ArrayList<>();
+        days.forEach((date, day) -> {
+            rows.add(new Row(date, DIMENSION_TOTAL, "", day.total));
+            day.categories.forEach((category, totals) ->
+                rows.add(new Row(date, DIMENSION_CATEGORY, category, totals)));
+            day.payments.forEach((payment, totals) ->
+                rows.add(new Row(date, DIMENSION_PAYMENT, payment, totals)));
+        });
+        return rows;
+    }
+    
+    private void putRow(Row row) {
+        Day day = days.computeIfAbsent(row.getDate(), k -> new Day());
+        switch (row.getDimension()) {
+            case DIMENSION_TOTAL -> day.total = row.getTotals().copy();
+            case DIMENSION_CATEGORY -> day.categories.put(row.getKey(), row.getTotals().copy());
+            case DIMENSION_PAYMENT -> day.payments.put(row.getKey(), row.getTotals().copy());
+            default -> { }
+        }
+    }
+    
+    private static class Day {
+        Totals total = new Totals();
+        final Map<String, Totals> categories = new TreeMap<>();
+        final Map<String, Totals> payments = new TreeMap<>();
+    }
+    
+    // One saved rollup row: a day's figures in total, for one category or for
+    // one payment method (key is empty for the total)
+    public static class Row {
+        private final LocalDate date;
+        private final String dimension;
+        private final String key;
+        private final Totals totals;
+        
+        public Row(LocalDate date, String dimension, String key, Totals totals) {
+            this.date = date;
+            this.dimension = dimension;
+            this.key = key;
+            this.totals = totals.copy();
+        }
+        
+        public LocalDate getDate() { return date; }
+        public String getDimension() { return dimension; }
+        public String getKey() { return key; }
+        public Totals getTotals() { return totals; }
+    }
+    
+    public static class Totals {
+        private double revenue;
+        private int items;
+        private int transactions;
+        private double tax;
+        private double discount;
+        
+        public Totals() {}
+        
+        public Totals(double revenue, int items, int transactions, double tax, double discount) {
+            this.revenue = revenue;
+            this.items = items;
+            this.transactions = transactions;
+            this.tax = tax;
+            this.discount = discount;
+        }
+        
+        void add(Order order) {
+            revenue += order.getFinalAmount();
+            items += order.getTotalItems();
+            transactions++;
+            tax += order.getTax();
+            discount += order.getDiscount();
+        }
+        
+        void add(Totals other, int sign) {
+            revenue += sign * other.revenue;
+            items += sign * other.items;
+            transactions += sign * other.transactions;
+            tax += sign * other.tax;
+            discount += sign * other.discount;
+        }
+        
+        Totals copy() {
+            Totals copy = new Totals();
+            copy.add(this, 1);
+            return copy;
+        }
+        
+        public double getRevenue() { return revenue; }
+        public int getItems() { return items; }
+        public int getTransactions() { return transactions; }
+        public double getTax() { return tax; }
+        public double getDiscount() { return discount; }
+        
+        public double getAverageTransaction() {
+            return transactions > 0 ? revenue / transactions : 0;
+        }
+    }
+}
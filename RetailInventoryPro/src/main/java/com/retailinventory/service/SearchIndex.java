@@ -0,0 +1,228 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Product;
+import java.util.*;
+
+// Inverted index over product ID, barcode, name, category and description.
+// Every word is indexed under each of its substrings (up to MAX_SUBSTRING_LENGTH),
+// so a query word matches any word it appears in. Products are numbered and
+// posting lists hold those numbers; removed products leave dead entries that
+// are skipped and cleared out by a periodic rebuild. Not thread-safe:
+// ProductIndex serialises access.
+class SearchIndex {
+    private static final int MAX_SUBSTRING_LENGTH = 12;
+    private static final int WEIGHT_ID = 8;
+    private static final int WEIGHT_NAME = 4;
+    private static final int WEIGHT_CATEGORY = 2;
+    private static final int WEIGHT_DESCRIPTION = 1;
+    private static final int REBUILD_MIN_DEAD = 1000;
+    
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> docById = new HashMap<>();
+    private final List<Product> docs = new ArrayList<>();
+    private final List<String[]> wordsByDoc = new ArrayList<>();
+    private int deadDocs;
+    
+    // Per-query scratch space, indexed by doc number
+    private int[] scores = new int[0];
+    private int[] matched = new int[0];
+    private int queryStamp;
+    
+    void add(Product product) {
+        Map<String, Integer> words = new HashMap<>();
+        addWords(words, product.getProductId(), WEIGHT_ID);
+        addWords(words, product.getBarcode(), WEIGHT_ID);
+        addWords(words, product.getName(), WEIGHT_NAME);
+        addWords(words, product.getCategory(), WEIGHT_CATEGORY);
+        addWords(words, product.getDescription(), WEIGHT_DESCRIPTION);
+        
+        // One entry per substring per product, at the best score of the words containing it
+        Map<String, Integer> substrings = new HashMap<>();
+        for (Map.Entry<String, Integer> word : words.entrySet()) {
+            String text = word.getKey();
+            int weight = word.getValue();
+            for (int start = 0; start < text.length(); start++) {
+                int limit = Math.min(text.length(), start + MAX_SUBSTRING_LENGTH);
+                for (int end = start + 1; end <= limit; end++) {
+                    // Whole words rank above word starts, and word starts above the rest
+                    int score = start > 0 ? weight : end == text.length() ? weight * 4 : weight * 2;
+                    substrings.merge(text.substring(start, end), score, Math::max);
+                }
+            }
+        }
+        
+        int doc = docs.size();
+        docs.add(product);
+        wordsByDoc.add(words.keySet().toArray(new String[0]));
+        docById.put(product.getProductId(), doc);
+        
+        for (Map.Entry<String, Integer> substring : substrings.entrySet()) {
+            postings.computeIfAbsent(substring.getKey(), k -> new Postings()).add(doc, substring.getValue());
+        }
+    }
+    
+    void remove(String productId) {
+        Integer doc = docById.remove(productId);
+        if (doc == null) {
+            return;
+        }
+        
+        docs.set(doc, null);
+        wordsByDoc.set(doc, null);
+        deadDocs++;
+        
+        if (deadDocs > REBUILD_MIN_DEAD && deadDocs > docById.size()) {
+            rebuild();
+        }
+    }
+    
+    // Products matching every query word, best first, at most 'limit' of them.
+    // Ties go to the earlier indexed product.
+    List<Product> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        List<Product> results = new ArrayList<>();
+        if (words.isEmpty() || limit <= 0) {
+            return results;
+        }
+        
+        // Rarest word first keeps the candidate set small
+        words.sort(Comparator.comparingInt(word -> postingsFor(word).size));
+        
+        if (scores.length < docs.size()) {
+            scores = new int[docs.size() * 2];
+            matched = new int[docs.size() * 2];
+            queryStamp = 0;
+        }
+        if (queryStamp > Integer.MAX_VALUE - words.size() - 1) {
+            Arrays.fill(matched, 0);
+            queryStamp = 0;
+        }
+        int stamp = queryStamp + 1;
+        queryStamp += words.size() + 1;
+        
+        // A doc is still a candidate after word k when matched[doc] == stamp + k
+        Postings last = null;
+        for (int k = 0; k < words.size(); k++) {
+            String word = words.get(k);
+            last = postingsFor(word);
+            for (int i = 0; i < last.size; i++) {
+                int doc = last.docs[i];
+                if (docs.get(doc) == null) continue;
+                
+                if (k == 0) {
+                    if (!matchesLongWord(doc, word)) continue;
+                    scores[doc] = last.scores[i];
+                    matched[doc] = stamp;
+                } else if (matched[doc] == stamp + k - 1 && matchesLongWord(doc, word)) {
+                    scores[doc] += last.scores[i];
+                    matched[doc] = stamp + k;
+                }
+            }
+        }
+        
+        // Bounded min-heap keeps the best 'limit' results
+        int finalStamp = stamp + words.size() - 1;
+        Comparator<Integer> ranking = (a, b) -> {
+            int byScore = Integer.compare(scores[a], scores[b]);
+            return byScore != 0 ? byScore : Integer.compare(b, a);
+        };
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.min(limit, last.size) + 1, ranking);
+        for (int i = 0; i < last.size; i++) {
+            int doc = last.docs[i];
+            if (matched[doc] != finalStamp || docs.get(doc) == null) continue;
+            
+            if (best.size() < limit) {
+                best.offer(doc);
+            } else if (ranking.compare(doc, best.peek()) > 0) {
+                best.poll();
+                best.offer(doc);
+            }
+        }
+        
+        while (!best.isEmpty()) {
+            results.add(docs.get(best.poll()));
+        }
+        Collections.reverse(results);
+        return results;
+    }
+    
+    private Postings postingsFor(String word) {
+        String key = word.length() > MAX_SUBSTRING_LENGTH ? word.substring(0, MAX_SUBSTRING_LENGTH) : word;
+        return postings.getOrDefault(key, Postings.EMPTY);
+    }
+    
+    // Words longer than the indexed substrings are confirmed against the product's own words
+    private boolean matchesLongWord(int doc, String word) {
+        if (word.length() <= MAX_SUBSTRING_LENGTH) {
+            return true;
+        }
+        for (String indexed : wordsByDoc.get(doc)) {
+            if (indexed.contains(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void rebuild() {
+        List<Product> live = new ArrayList<>(docById.size());
+        for (Product product : docs) {
+            if (product != null) {
+                live.add(product);
+            }
+        }
+        
+        postings.clear();
+        docById.clear();
+        docs.clear();
+        wordsByDoc.clear();
+        deadDocs = 0;
+        
+        for (Product product : live) {
+            add(product);
+        }
+    }
+    
+    private static void addWords(Map<String, Integer> words, String text, int weight) {
+        for (String word : tokenize(text)) {
+            words.merge(word, weight, Math::max);
+        }
+    }
+    
+    private static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return words;
+    }
+    
+    private static class Postings {
+        static final Postings EMPTY = new Postings();
+        
+        int[] docs = new int[4];
+        int[] scores = new int[4];
+        int size;
+        
+        void add(int doc, int score) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            docs[size] = doc;
+            scores[size] = score;
+            size++;
+        }
+    }
+}
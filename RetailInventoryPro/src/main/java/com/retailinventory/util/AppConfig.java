@@ -0,0 +1,68 @@
+package com.retailinventory.util;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Properties;
+
+// Application settings. Later files override earlier ones, so a
+// config/application.properties next to the install wins over the defaults.
+public class AppConfig {
+    private static final String[] CONFIG_FILES = {
+        "src/resources/config.properties",
+        "config/application.properties"
+    };
+    
+    private static Properties properties;
+    
+    public static synchronized String get(String key, String defaultValue) {
+        if (properties == null) {
+            properties = load();
+        }
+        return properties.getProperty(key, defaultValue).trim();
+    }
+    
+    public static int getInt(String key, int defaultValue) {
+        try {
+            return Integer.parseInt(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+    
+    public static long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(get(key, String.valueOf(defaultValue)));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+    
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        return Boolean.parseBoolean(get(key, String.valueOf(defaultValue)));
+    }
+    
+    private static Properties load() {
+        Properties loaded = new Properties();
+        
+        try (InputStream in = AppConfig.class.getResourceAsStream("/config.properties")) {
+            if (in != null) {
+                loaded.load(in);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to read bundled configuration: " + e.getMessage());
+        }
+        
+        for (String file : CONFIG_FILES) {
+            Path path = Paths.get(file);
+            if (!Files.exists(path)) continue;
+            
+            try (Reader reader = Files.newBufferedReader(path)) {
+                loaded.load(reader);
+            } catch (IOException e) {
+                System.err.println("Failed to read " + file + ": " + e.getMessage());
+            }
+        }
+        
+        return loaded;
+    }
+}
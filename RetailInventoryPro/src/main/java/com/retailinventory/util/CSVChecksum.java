@@ -0,0 +1,159 @@
+package com.retailinventory.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.zip.CRC32;
+
+// Integrity footer for data files rewritten by CSVHandler.writeChecksummedCSV.
+// The footer line "#CHECKSUM,<crc32>,<length>" covers the <length> bytes
+// before it. Rows appended after a rewrite follow the footer and are not
+// covered. Only the last FOOTER_SEARCH_SIZE bytes are searched for the footer,
+// so once more than that has been appended after it the file goes unverified
+// until its next rewrite.
+public class CSVChecksum {
+    public static final String FOOTER_TAG = "#CHECKSUM";
+    
+    private static final int FOOTER_SEARCH_SIZE = 64 * 1024;
+    private static final int MAX_FOOTER_LENGTH = 64;
+    private static final long MAP_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final byte[] FOOTER_PREFIX = 
+        (FOOTER_TAG + ",").getBytes(StandardCharsets.US_ASCII);
+    
+    public static String footer(long crc, long length) {
+        return FOOTER_TAG + "," + Long.toHexString(crc) + "," + length;
+    }
+    
+    // Files without a footer (older files, pure append logs) are accepted as they are
+    public static void verify(String filePath) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return;
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] footer = findFooter(channel);
+            if (footer == null) {
+                return;
+            }
+            
+            long actual = checksum(channel, footer[1]);
+            if (actual != footer[0]) {
+                throw new IOException("Checksum mismatch in " + filePath + 
+                    ": file is corrupt or was partially written");
+            }
+        }
+    }
+    
+    // The footer near the end of the file, as {crc, offset, end offset}, or
+    // null when there is none
+    public static long[] findFooter(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return findFooter(channel);
+        }
+    }
+    
+    // The footer line at 'offset', as {crc, offset, end offset}, or null when
+    // there isn't one there, e.g. because the file has been rewritten since
+    public static long[] readFooterAt(FileChannel channel, long offset) throws IOException {
+        long size = channel.size();
+        if (offset < 0 || offset >= size) {
+            return null;
+        }
+        
+        ByteBuffer line = ByteBuffer.allocate((int) Math.min(MAX_FOOTER_LENGTH + 2, size - offset));
+        while (line.hasRemaining() && channel.read(line, offset + line.position()) >= 0) {
+            // Read the whole line
+        }
+        long end = offset + line.position();
+        for (int i = 0; i < line.position(); i++) {
+            if (line.get(i) == '\n') {
+                end = offset + i + 1;
+                break;
+            }
+        }
+        
+        long[] footer = parseFooter(channel, offset, end);
+        return footer != null && footer[1] == offset ? footer : null;
+    }
+    
+    // Walks back through the tail of the file to the last footer line whose
+    // recorded length matches its own position; returns {crc, length, end}
+    private static long[] findFooter(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long blockStart = Math.max(0, size - FOOTER_SEARCH_SIZE);
+        ByteBuffer block = ByteBuffer.allocate((int) (size - blockStart));
+        while (block.hasRemaining() && channel.read(block, blockStart + block.position()) >= 0) {
+            // Read the whole block
+        }
+        block.flip();
+        
+        long lineEnd = size;
+        for (int i = block.limit() - 1; i >= -1; i--) {
+            boolean atLineStart = i >= 0 ? block.get(i) == '\n' : blockStart == 0;
+            if (!atLineStart) continue;
+            
+            long lineStart = blockStart + i + 1;
+            if (lineStart < lineEnd && mayStartFooter(block, i + 1)) {
+                long[] footer = parseFooter(channel, lineStart, lineEnd);
+                if (footer != null && footer[1] == lineStart) {
+                    return footer;
+                }
+            }
+            lineEnd = lineStart;
+        }
+        return null;
+    }
+    
+    // Lines running past the end of the block are left to parseFooter
+    private static boolean mayStartFooter(ByteBuffer block, int offset) {
+        if (offset + FOOTER_PREFIX.length > block.limit()) {
+            return true;
+        }
+        for (int i = 0; i < FOOTER_PREFIX.length; i++) {
+            if (block.get(offset + i) != FOOTER_PREFIX[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static long[] parseFooter(FileChannel channel, long start, long end) throws IOException {
+        if (end - start < FOOTER_PREFIX.length || end - start > MAX_FOOTER_LENGTH) {
+            return null;
+        }
+        
+        ByteBuffer line = ByteBuffer.allocate((int) (end - start));
+        channel.read(line, start);
+        String text = new String(line.array(), StandardCharsets.US_ASCII).trim();
+        if (!text.startsWith(FOOTER_TAG)) {
+            return null;
+        }
+        
+        String[] parts = text.split(",");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseLong(parts[1], 16), Long.parseLong(parts[2]), end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private static long checksum(FileChannel channel, long length) throws IOException {
+        CRC32 crc = new CRC32();
+        for (long position = 0; position < length; position += MAP_SEGMENT_SIZE) {
+            long segment = Math.min(MAP_SEGMENT_SIZE, length - position);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, segment);
+            crc.update(buffer);
+        }
+        return crc.getValue();
+    }
+}
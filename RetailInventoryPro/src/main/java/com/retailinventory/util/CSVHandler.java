@@ -1,10 +1,18 @@
 package com.retailinventory.util;
 
 import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
 
 public class CSVHandler {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
     
     public static List<String[]> readCSV(String filePath) throws IOException {
         List<String[]> data = new ArrayList<>();
@@ -14,35 +22,144 @@ public class CSVHandler {
             return data;
         }
         
-        try (BufferedReader br = Files.newBufferedReader(path)) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                String[] row = parseCSVLine(line);
-                data.add(row);
+        streamCSV(filePath, false, row -> data.add(row.toArray()));
+        
+        return data;
+    }
+    
+    // Hands each row to the handler as soon as it is parsed. The CSVRow is
+    // reused between calls, so handlers must copy out anything they keep.
+    // A file with a checksum footer is verified before any row is handed out.
+    public static void streamCSV(String filePath, boolean skipHeader, Consumer<CSVRow> handler) 
+            throws IOException {
+        
+        Path path = Paths.get(filePath);
+        
+        if (!Files.exists(path)) {
+            return;
+        }
+        
+        CSVChecksum.verify(filePath);
+        streamVerifiedCSV(filePath, skipHeader, handler);
+    }
+    
+    // For callers that have already run CSVChecksum.verify on the file
+    static void streamVerifiedCSV(String filePath, boolean skipHeader, Consumer<CSVRow> handler) 
+            throws IOException {
+        
+        stream(Paths.get(filePath), 0, Long.MAX_VALUE, skipHeader, handler);
+    }
+    
+    // Rows before byte 'end', which must be the end of a row, e.g. the length
+    // the file had before rows that are still being appended
+    public static void streamCSVTo(String filePath, long end, boolean skipHeader, Consumer<CSVRow> handler) 
+            throws IOException {
+        
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return;
+        }
+        
+        CSVChecksum.verify(filePath);
+        stream(path, 0, end, skipHeader, handler);
+    }
+    
+    // Rows from byte 'offset' on, which must be the start of a row. Nothing
+    // past a checksum footer is covered by it, so nothing is verified here.
+    public static void streamCSVFrom(String filePath, long offset, Consumer<CSVRow> handler) 
+            throws IOException {
+        
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return;
+        }
+        stream(path, offset, Long.MAX_VALUE, false, handler);
+    }
+    
+    private static void stream(Path path, long offset, long end, boolean skipHeader, Consumer<CSVRow> handler) 
+            throws IOException {
+        
+        CSVParser parser = new CSVParser(handler, skipHeader);
+        CharBuffer buffer = CharBuffer.allocate(READ_BUFFER_SIZE);
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+             Reader reader = new InputStreamReader(new LimitedInputStream(
+                 Channels.newInputStream(channel.position(offset)), end - offset), StandardCharsets.UTF_8)) {
+            while (reader.read(buffer) != -1) {
+                buffer.flip();
+                parser.feed(buffer);
+                buffer.clear();
             }
         }
         
-        return data;
+        parser.finish();
     }
     
+    // Appends go straight to the file. Rewrites go to a temporary file that is
+    // fsynced and renamed over the target, so readers see either the old or the
+    // new contents, never a torn mix.
     public static void writeCSV(String filePath, List<String[]> data, boolean append) 
             throws IOException {
         
-        Path path = Paths.get(filePath);
-        StandardOpenOption option = append ? 
-            StandardOpenOption.APPEND : 
-            StandardOpenOption.CREATE;
+        if (!append) {
+            rewrite(Paths.get(filePath), data, false);
+            return;
+        }
         
-        try (BufferedWriter bw = Files.newBufferedWriter(path, option)) {
+        try (BufferedWriter bw = Files.newBufferedWriter(Paths.get(filePath), 
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
             for (String[] row : data) {
-                String line = formatCSVLine(row);
-                bw.write(line);
+                bw.write(formatCSVLine(row));
                 bw.newLine();
             }
         }
     }
     
-    private static String[] parseCSVLine(String line) {
+    // Rewrites the application's own data files the same way, with a checksum
+    // footer that streamCSV verifies on every read. Not for exports meant for
+    // people or other programs.
+    public static void writeChecksummedCSV(String filePath, List<String[]> data) throws IOException {
+        rewrite(Paths.get(filePath), data, true);
+    }
+    
+    private static void rewrite(Path path, List<String[]> data, boolean checksum) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        long length = 0;
+        
+        try (FileOutputStream file = new FileOutputStream(temp.toFile());
+             OutputStream out = new BufferedOutputStream(file, WRITE_BUFFER_SIZE)) {
+            
+            for (String[] row : data) {
+                byte[] line = (formatCSVLine(row) + System.lineSeparator())
+                    .getBytes(StandardCharsets.UTF_8);
+                out.write(line);
+                crc.update(line);
+                length += line.length;
+            }
+            
+            if (checksum) {
+                out.write((CSVChecksum.footer(crc.getValue(), length) + System.lineSeparator())
+                    .getBytes(StandardCharsets.UTF_8));
+            }
+            out.flush();
+            file.getChannel().force(true);
+        }
+        
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path.toAbsolutePath().getParent());
+    }
+    
+    // Makes the rename itself durable; not supported on every platform
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+    
+    public static String[] parseCSVLine(String line) {
         List<String> fields = new ArrayList<>();
         StringBuilder field = new StringBuilder();
         boolean inQuotes = false;
@@ -69,7 +186,7 @@ public class CSVHandler {
         return fields.toArray(new String[0]);
     }
     
-    private static String formatCSVLine(String[] fields) {
+    public static String formatCSVLine(String[] fields) {
         StringBuilder line = new StringBuilder();
         
         for (int i = 0; i < fields.length; i++) {
@@ -79,8 +196,10 @@ public class CSVHandler {
                 field = "";
             }
             
-            // Check if field needs quoting
-            boolean needsQuotes = field.contains(",") || 
+            // Check if field needs quoting. A leading '#' is quoted too, so a
+            // value can never be taken for a checksum footer.
+            boolean needsQuotes = field.startsWith("#") ||
+                                 field.contains(",") || 
                                  field.contains("\"") || 
                                  field.contains("\n") || 
                                  field.contains("\r");
@@ -125,4 +244,38 @@ public class CSVHandler {
         
         writeCSV(filePath, rows, false);
     }
-}
\ No newline at end of file
+    
+    // Ends the stream after 'limit' bytes, so a reader stops at a given offset
+    private static class LimitedInputStream extends FilterInputStream {
+        private long remaining;
+        
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.remaining = limit;
+        }
+        
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+        
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+    }
+}
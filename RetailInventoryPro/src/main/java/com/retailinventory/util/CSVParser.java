@@ -0,0 +1,81 @@
+package com.retailinventory.util;
+
+import java.nio.CharBuffer;
+import java.util.function.Consumer;
+
+// Incremental CSV state machine. Input can arrive in any number of buffers;
+// quoted fields may span buffer and line boundaries.
+public class CSVParser {
+    private final Consumer<CSVRow> handler;
+    private final CSVRow row;
+    private boolean skipHeader;
+    private boolean inQuotes;
+    private boolean quotePending;
+    // Only an unquoted first field can be a checksum footer
+    private boolean firstFieldQuoted;
+    
+    public CSVParser(Consumer<CSVRow> handler, boolean skipHeader) {
+        this.handler = handler;
+        this.row = new CSVRow();
+        this.skipHeader = skipHeader;
+    }
+    
+    public void feed(CharBuffer input) {
+        while (input.hasRemaining()) {
+            char c = input.get();
+            
+            if (inQuotes) {
+                if (quotePending) {
+                    quotePending = false;
+                    if (c == '"') {
+                        row.append('"'); // Escaped quote
+                        continue;
+                    }
+                    inQuotes = false;
+                } else if (c == '"') {
+                    quotePending = true;
+                    continue;
+                } else {
+                    row.append(c);
+                    continue;
+                }
+            }
+            
+            if (c == '"') {
+                inQuotes = true;
+                if (row.size() == 0) {
+                    firstFieldQuoted = true;
+                }
+            } else if (c == ',') {
+                row.endField();
+            } else if (c == '\n') {
+                emitRow();
+            } else if (c != '\r') {
+                row.append(c);
+            }
+        }
+    }
+    
+    public void finish() {
+        if (quotePending) {
+            quotePending = false;
+            inQuotes = false;
+        }
+        emitRow();
+    }
+    
+    private void emitRow() {
+        if (!row.isBlank()) {
+            row.endField();
+            if (!firstFieldQuoted && row.fieldEquals(0, CSVChecksum.FOOTER_TAG)) {
+                // Integrity footer written by CSVHandler.writeChecksummedCSV, not data
+            } else if (skipHeader) {
+                skipHeader = false;
+            } else {
+                handler.accept(row);
+            }
+        }
+        row.reset();
+        firstFieldQuoted = false;
+    }
+}
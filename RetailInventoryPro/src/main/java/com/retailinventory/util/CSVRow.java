@@ -0,0 +1,133 @@
+package com.retailinventory.util;
+
+import java.util.Arrays;
+
+// One parsed CSV record. The character and offset buffers are reused for
+// every row of a file, so a field only becomes a String when it is read.
+public class CSVRow {
+    private char[] chars = new char[256];
+    private int length;
+    private int[] fieldEnds = new int[32];
+    private int fieldCount;
+    
+    void append(char c) {
+        if (length == chars.length) {
+            chars = Arrays.copyOf(chars, chars.length * 2);
+        }
+        chars[length++] = c;
+    }
+    
+    void endField() {
+        if (fieldCount == fieldEnds.length) {
+            fieldEnds = Arrays.copyOf(fieldEnds, fieldEnds.length * 2);
+        }
+        fieldEnds[fieldCount++] = length;
+    }
+    
+    void reset() {
+        length = 0;
+        fieldCount = 0;
+    }
+    
+    boolean isBlank() {
+        return length == 0 && fieldCount == 0;
+    }
+    
+    boolean fieldEquals(int index, String value) {
+        if (index >= fieldCount) {
+            return false;
+        }
+        int start = start(index);
+        if (fieldEnds[index] - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (chars[start + i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public int size() {
+        return fieldCount;
+    }
+    
+    public String get(int index) {
+        int start = start(index);
+        return new String(chars, start, fieldEnds[index] - start);
+    }
+    
+    public boolean isEmpty(int index) {
+        return start(index) == fieldEnds[index];
+    }
+    
+    public int getInt(int index) {
+        int pos = start(index);
+        int end = fieldEnds[index];
+        if (pos == end) {
+            throw new NumberFormatException("Empty field " + index);
+        }
+        
+        boolean negative = chars[pos] == '-';
+        if (negative || chars[pos] == '+') {
+            pos++;
+            if (pos == end) {
+                throw new NumberFormatException(get(index));
+            }
+        }
+        
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = chars[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException(get(index));
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                throw new NumberFormatException(get(index));
+            }
+        }
+        
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw new NumberFormatException(get(index));
+        }
+        return (int) value;
+    }
+    
+    public double getDouble(int index) {
+        return Double.parseDouble(get(index));
+    }
+    
+    public boolean getBoolean(int index) {
+        int start = start(index);
+        if (fieldEnds[index] - start != 4) {
+            return false;
+        }
+        return Character.toLowerCase(chars[start]) == 't' &&
+               Character.toLowerCase(chars[start + 1]) == 'r' &&
+               Character.toLowerCase(chars[start + 2]) == 'u' &&
+               Character.toLowerCase(chars[start + 3]) == 'e';
+    }
+    
+    public String[] toArray() {
+        String[] fields = new String[fieldCount];
+        for (int i = 0; i < fieldCount; i++) {
+            fields[i] = get(i);
+        }
+        return fields;
+    }
+    
+    private int start(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " of " + fieldCount);
+        }
+        return index == 0 ? 0 : fieldEnds[index - 1];
+    }
+    
+    @Override
+    public String toString() {
+        return String.join(",", toArray());
+    }
+}
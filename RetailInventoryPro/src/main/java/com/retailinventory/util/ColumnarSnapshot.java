@@ -0,0 +1,313 @@
+package com.retailinventory.util;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+// Binary, column-by-column copy of a CSV table. Strings are length-prefixed
+// UTF-8, numbers are stored as primitives and dates as epoch day/second, so
+// loading is one bulk read with no text parsing. The header records how many
+// bytes of the CSV the snapshot covers and stamps what they were: the CSV's
+// checksum footer (see CSVChecksum) plus a CRC of the rows appended after it,
+// or for a CSV without a footer its exact size and modification time.
+// Rows appended to a footered CSV later only extend it, so the snapshot stays
+// valid and the caller parses just the rows past getCoveredLength(). A CSV
+// that was rewritten, edited or cut short no longer matches and the snapshot
+// is treated as stale.
+public class ColumnarSnapshot {
+    private static final int MAGIC = 0x52495053; // "RIPS"
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 52;
+    private static final int NULL_LENGTH = -1;
+    private static final int NULL_DAY = Integer.MIN_VALUE;
+    private static final long NULL_SECOND = Long.MIN_VALUE;
+    private static final long NO_FOOTER = -1;
+    private static final int CHECKSUM_BLOCK_SIZE = 64 * 1024;
+    
+    // Returns null when the snapshot is missing, stale or unreadable
+    public static Reader read(String snapshotFile, String sourceFile) throws IOException {
+        Path path = Paths.get(snapshotFile);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        
+        try {
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long coveredLength = buffer.getLong();
+            Stamp stamp = new Stamp(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+            if (!stamp.equals(Stamp.of(Paths.get(sourceFile), coveredLength, stamp.footerOffset))) {
+                return null;
+            }
+            return new Reader(buffer, buffer.getInt(), coveredLength);
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+    
+    // What the first 'length' bytes of a CSV were when a snapshot was taken
+    private static class Stamp {
+        final long footerOffset;
+        final long footerCrc;
+        // CRC of the bytes between the footer and 'length'
+        final long tailCrc;
+        // Without a footer: the CSV's modification time; its size is 'length'
+        final long modified;
+        
+        Stamp(long footerOffset, long footerCrc, long tailCrc, long modified) {
+            this.footerOffset = footerOffset;
+            this.footerCrc = footerCrc;
+            this.tailCrc = tailCrc;
+            this.modified = modified;
+        }
+        
+        // The footer is looked for at 'footerOffset' if known, otherwise near
+        // the end of the file. Null when the source is missing or too short.
+        static Stamp of(Path source, long length, long footerOffset) throws IOException {
+            if (!Files.exists(source)) {
+                return null;
+            }
+            
+            try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < length) {
+                    return null;
+                }
+                
+                long[] footer = footerOffset != NO_FOOTER
+                    ? CSVChecksum.readFooterAt(channel, footerOffset)
+                    : footerBefore(source, length);
+                if (footer == null || footer[2] > length) {
+                    if (size != length) {
+                        return null;
+                    }
+                    return new Stamp(NO_FOOTER, 0, 0, Files.getLastModifiedTime(source).toMillis());
+                }
+                return new Stamp(footer[1], footer[0], checksum(channel, footer[2], length), 0);
+            }
+        }
+        
+        private static long[] footerBefore(Path source, long length) throws IOException {
+            long[] footer = CSVChecksum.findFooter(source);
+            return footer != null && footer[2] <= length ? footer : null;
+        }
+        
+        private static long checksum(FileChannel channel, long start, long end) throws IOException {
+            CRC32 crc = new CRC32();
+            ByteBuffer block = ByteBuffer.allocate(CHECKSUM_BLOCK_SIZE);
+            for (long position = start; position < end; ) {
+                block.clear();
+                block.limit((int) Math.min(block.capacity(), end - position));
+                int read = channel.read(block, position);
+                if (read < 0) break;
+                block.flip();
+                crc.update(block);
+                position += read;
+            }
+            return crc.getValue();
+        }
+        
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Stamp)) {
+                return false;
+            }
+            Stamp stamp = (Stamp) other;
+            return footerOffset == stamp.footerOffset && footerCrc == stamp.footerCrc
+                && tailCrc == stamp.tailCrc && modified == stamp.modified;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(footerOffset, footerCrc, tailCrc, modified);
+        }
+    }
+    
+    public static class Writer<T> {
+        private final List<T> rows;
+        private final ByteArrayOutputStream bytes;
+        private final DataOutputStream out;
+        
+        public Writer(List<T> rows) {
+            this.rows = rows;
+            this.bytes = new ByteArrayOutputStream();
+            this.out = new DataOutputStream(bytes);
+        }
+        
+        public Writer<T> strings(Function<T, String> column) throws IOException {
+            for (T row : rows) {
+                String value = column.apply(row);
+                if (value == null) {
+                    out.writeInt(NULL_LENGTH);
+                } else {
+                    byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+                    out.writeInt(utf8.length);
+                    out.write(utf8);
+                }
+            }
+            return this;
+        }
+        
+        public Writer<T> ints(ToIntFunction<T> column) throws IOException {
+            for (T row : rows) {
+                out.writeInt(column.applyAsInt(row));
+            }
+            return this;
+        }
+        
+        public Writer<T> doubles(ToDoubleFunction<T> column) throws IOException {
+            for (T row : rows) {
+                out.writeDouble(column.applyAsDouble(row));
+            }
+            return this;
+        }
+        
+        public Writer<T> booleans(Predicate<T> column) throws IOException {
+            for (T row : rows) {
+                out.writeBoolean(column.test(row));
+            }
+            return this;
+        }
+        
+        public Writer<T> dates(Function<T, LocalDate> column) throws IOException {
+            for (T row : rows) {
+                LocalDate value = column.apply(row);
+                out.writeInt(value != null ? (int) value.toEpochDay() : NULL_DAY);
+            }
+            return this;
+        }
+        
+        public Writer<T> dateTimes(Function<T, LocalDateTime> column) throws IOException {
+            for (T row : rows) {
+                LocalDateTime value = column.apply(row);
+                out.writeLong(value != null ? value.toEpochSecond(ZoneOffset.UTC) : NULL_SECOND);
+            }
+            return this;
+        }
+        
+        // Stamps the snapshot as covering all of sourceFile as it is now, so
+        // call it while nothing can append to the file
+        public void writeTo(String snapshotFile, String sourceFile) throws IOException {
+            Path source = Paths.get(sourceFile);
+            writeTo(snapshotFile, sourceFile, Files.exists(source) ? Files.size(source) : 0);
+        }
+        
+        // Stamps the snapshot as covering the first 'coveredLength' bytes of
+        // sourceFile, which must be exactly the rows written
+        public void writeTo(String snapshotFile, String sourceFile, long coveredLength) throws IOException {
+            Stamp stamp = Stamp.of(Paths.get(sourceFile), coveredLength, NO_FOOTER);
+            if (stamp == null) {
+                // Missing or short, so a snapshot of it would never be read back
+                return;
+            }
+            out.flush();
+            
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION)
+                .putLong(coveredLength)
+                .putLong(stamp.footerOffset).putLong(stamp.footerCrc)
+                .putLong(stamp.tailCrc).putLong(stamp.modified)
+                .putInt(rows.size());
+            
+            Path target = Paths.get(snapshotFile);
+            Path temp = Paths.get(snapshotFile + ".tmp");
+            try (OutputStream file = Files.newOutputStream(temp)) {
+                file.write(header.array());
+                bytes.writeTo(file);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+    
+    public static class Reader {
+        private final ByteBuffer buffer;
+        private final int rowCount;
+        private final long coveredLength;
+        
+        private Reader(ByteBuffer buffer, int rowCount, long coveredLength) {
+            this.buffer = buffer;
+            this.rowCount = rowCount;
+            this.coveredLength = coveredLength;
+        }
+        
+        public int getRowCount() {
+            return rowCount;
+        }
+        
+        // Rows of the CSV from this byte on are not in the snapshot
+        public long getCoveredLength() {
+            return coveredLength;
+        }
+        
+        public String[] strings() {
+            String[] column = new String[rowCount];
+            byte[] array = buffer.array();
+            for (int i = 0; i < rowCount; i++) {
+                int length = buffer.getInt();
+                if (length != NULL_LENGTH) {
+                    column[i] = new String(array, buffer.position(), length, StandardCharsets.UTF_8);
+                    buffer.position(buffer.position() + length);
+                }
+            }
+            return column;
+        }
+        
+        public int[] ints() {
+            int[] column = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                column[i] = buffer.getInt();
+            }
+            return column;
+        }
+        
+        public double[] doubles() {
+            double[] column = new double[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                column[i] = buffer.getDouble();
+            }
+            return column;
+        }
+        
+        public boolean[] booleans() {
+            boolean[] column = new boolean[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                column[i] = buffer.get() != 0;
+            }
+            return column;
+        }
+        
+        public LocalDate[] dates() {
+            LocalDate[] column = new LocalDate[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                int day = buffer.getInt();
+                column[i] = day != NULL_DAY ? LocalDate.ofEpochDay(day) : null;
+            }
+            return column;
+        }
+        
+        public LocalDateTime[] dateTimes() {
+            LocalDateTime[] column = new LocalDateTime[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                long second = buffer.getLong();
+                column[i] = second != NULL_SECOND ?
+                    LocalDateTime.ofEpochSecond(second, 0, ZoneOffset.UTC) : null;
+            }
+            return column;
+        }
+    }
+}
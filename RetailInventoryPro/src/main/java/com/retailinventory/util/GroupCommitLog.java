@@ -0,0 +1,191 @@
+package com.retailinventory.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Append-only log lines written by one background thread. Callers only queue
+// the line; the writer drains everything queued within the commit interval
+// and writes it with one write (and optionally one fsync) per file.
+// A full queue blocks the caller until the writer catches up. Lines appended
+// before close() are all written; appends after it are refused.
+public class GroupCommitLog {
+    private static final long IDLE_POLL_MILLIS = 100;
+    
+    private final BlockingQueue<Record> queue;
+    private final long commitIntervalMillis;
+    private final boolean fsync;
+    private final Map<String, FileChannel> channels = new HashMap<>();
+    private final Thread writer;
+    private final Object progress = new Object();
+    private long submitted;
+    private long written;
+    private volatile boolean running = true;
+    // Appends share it while they check 'running' and queue their record;
+    // close() takes it alone, so no record lands after the writer's last drain
+    private final ReadWriteLock closing = new ReentrantReadWriteLock();
+    
+    public GroupCommitLog(int queueCapacity, long commitIntervalMillis, boolean fsync) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.commitIntervalMillis = commitIntervalMillis;
+        this.fsync = fsync;
+        
+        this.writer = new Thread(this::run, "group-commit-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                flush();
+            } catch (InterruptedIOException e) {
+                // close() still drains the queue
+            }
+            close();
+        }));
+    }
+    
+    public void append(String filePath, String line) throws IOException {
+        closing.readLock().lock();
+        try {
+            if (!running) {
+                throw new IOException("Log writer is closed");
+            }
+            
+            synchronized (progress) {
+                submitted++;
+            }
+            try {
+                // The writer keeps draining while this waits, so close() can't block it for good
+                queue.put(new Record(filePath, line));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                synchronized (progress) {
+                    submitted--;
+                }
+                throw new InterruptedIOException("Interrupted while queueing log record");
+            }
+        } finally {
+            closing.readLock().unlock();
+        }
+    }
+    
+    // Waits until everything appended so far has been written
+    public void flush() throws InterruptedIOException {
+        synchronized (progress) {
+            long target = submitted;
+            while (written < target && writer.isAlive()) {
+                try {
+                    progress.wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while flushing log");
+                }
+            }
+        }
+    }
+    
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private void run() {
+        List<Record> batch = new ArrayList<>();
+        
+        while (running || !queue.isEmpty()) {
+            // Not interrupted on close: an interrupt would close the channels mid-write
+            try {
+                Record first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                
+                // Let concurrent callers join this commit
+                if (commitIntervalMillis > 0 && running) {
+                    Thread.sleep(commitIntervalMillis);
+                }
+            } catch (InterruptedException e) {
+                // Keep draining; close() ends the loop
+            }
+            
+            queue.drainTo(batch);
+            if (batch.isEmpty()) continue;
+            
+            writeBatch(batch);
+            
+            synchronized (progress) {
+                written += batch.size();
+                progress.notifyAll();
+            }
+            batch.clear();
+        }
+        
+        for (FileChannel channel : channels.values()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closing
+            }
+        }
+    }
+    
+    private void writeBatch(List<Record> batch) {
+        Map<String, StringBuilder> byFile = new LinkedHashMap<>();
+        for (Record record : batch) {
+            byFile.computeIfAbsent(record.filePath, f -> new StringBuilder())
+                .append(record.line).append(System.lineSeparator());
+        }
+        
+        for (Map.Entry<String, StringBuilder> entry : byFile.entrySet()) {
+            try {
+                FileChannel channel = channels.get(entry.getKey());
+                if (channel == null) {
+                    channel = FileChannel.open(Paths.get(entry.getKey()),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                    channels.put(entry.getKey(), channel);
+                }
+                
+                ByteBuffer buffer = ByteBuffer.wrap(
+                    entry.getValue().toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (fsync) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to write log " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+    
+    private static class Record {
+        final String filePath;
+        final String line;
+        
+        Record(String filePath, String line) {
+            this.filePath = filePath;
+            this.line = line;
+        }
+    }
+}
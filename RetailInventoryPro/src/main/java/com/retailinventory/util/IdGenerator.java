@@ -0,0 +1,133 @@
+package com.retailinventory.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Unique, increasing 63-bit IDs: milliseconds since EPOCH, then the node
+// number, then a sequence within the millisecond. Every store process writing
+// to the same data needs its own node number. Issuing an ID is one
+// compare-and-set; past 4096 IDs in a millisecond the sequence carries into
+// the next millisecond instead of waiting for the clock.
+//
+// The clock is not trusted to only move forward. A high-water mark a little
+// ahead of the last millisecond used is saved to disk, and a restart resumes
+// above it. A background thread keeps moving the mark ahead of the clock, so
+// issuing an ID only waits for the disk when that thread has fallen behind,
+// and fails if the mark can't be saved at all.
+public class IdGenerator {
+    private static final long EPOCH = 1704067200000L; // 2024-01-01T00:00:00Z
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+    
+    // How far ahead of the last used millisecond the saved mark is put
+    private static final long MARK_AHEAD_MILLIS = 10_000;
+    
+    private final long node;
+    private final Path markFile;
+    // Last issued millisecond and sequence, as (millis << SEQUENCE_BITS | sequence)
+    private final AtomicLong last;
+    // Every millisecond up to this one is covered by the saved mark
+    private volatile long savedUntil;
+    private final Thread extender;
+    
+    public IdGenerator(int node, String markFile) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node number must be 0-" + MAX_NODE + ": " + node);
+        }
+        
+        this.node = node;
+        this.markFile = Paths.get(markFile);
+        
+        long start = Math.max(currentMillis(), readMark() + 1);
+        this.last = new AtomicLong((start << SEQUENCE_BITS) - 1);
+        saveMark(start + MARK_AHEAD_MILLIS);
+        
+        this.extender = new Thread(this::run, "id-high-water-mark");
+        this.extender.setDaemon(true);
+        this.extender.start();
+    }
+    
+    public long next() {
+        long now = currentMillis() << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(now, previous + 1);
+        } while (!last.compareAndSet(previous, next));
+        
+        long millis = next >>> SEQUENCE_BITS;
+        if (millis > savedUntil) {
+            // Past the saved mark: a restart could issue this ID again
+            if (!saveMark(millis + MARK_AHEAD_MILLIS)) {
+                throw new IllegalStateException("Cannot issue IDs: failed to save the high-water mark " + markFile);
+            }
+        } else if (millis + MARK_AHEAD_MILLIS / 2 > savedUntil) {
+            // Sequence carries ran ahead of the clock; don't wait for the next round
+            LockSupport.unpark(extender);
+        }
+        
+        return (millis << (NODE_BITS + SEQUENCE_BITS)) | (node << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+    }
+    
+    private void run() {
+        while (true) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(MARK_AHEAD_MILLIS / 4));
+            
+            long millis = Math.max(currentMillis(), last.get() >>> SEQUENCE_BITS);
+            if (millis + MARK_AHEAD_MILLIS / 2 > savedUntil) {
+                saveMark(millis + MARK_AHEAD_MILLIS);
+            }
+        }
+    }
+    
+    // The mark only moves on once it is safely on disk
+    private synchronized boolean saveMark(long until) {
+        if (until <= savedUntil) {
+            return true;
+        }
+        
+        try {
+            Path parent = markFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            
+            // Written aside and renamed over, so a crash leaves the old or new mark
+            Path temp = markFile.resolveSibling(markFile.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                out.write(ByteBuffer.wrap(Long.toString(until).getBytes(StandardCharsets.US_ASCII)));
+                out.force(false);
+            }
+            Files.move(temp, markFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("Failed to save ID high-water mark: " + e.getMessage());
+            return false;
+        }
+        
+        savedUntil = until;
+        return true;
+    }
+    
+    private long readMark() {
+        try {
+            return Files.exists(markFile) ? Long.parseLong(Files.readString(markFile).trim()) : 0;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("Ignoring unreadable ID high-water mark: " + e.getMessage());
+            return 0;
+        }
+    }
+    
+    private static long currentMillis() {
+        return System.currentTimeMillis() - EPOCH;
+    }
+}
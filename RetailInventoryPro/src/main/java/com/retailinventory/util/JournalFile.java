@@ -0,0 +1,196 @@
+package com.retailinventory.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+public class JournalFile {
+    private final Path path;
+    // Whether every line in the file was written by a JournalFile, so that an
+    // unterminated last line can only be a torn append
+    private final boolean ownFormat;
+    private FileChannel channel;
+    // Counted on the first getEntryCount, so journals that never ask (plain
+    // append-only files) don't read themselves through on open; -1 until then
+    private int entryCount = -1;
+    
+    public JournalFile(String filePath) throws IOException {
+        this(filePath, true);
+    }
+    
+    // For appending to a CSV file that is also written by other means, such as
+    // a full rewrite or an editor, whose last line may legitimately lack a newline
+    public JournalFile(String filePath, boolean ownFormat) throws IOException {
+        this.path = Paths.get(filePath);
+        this.ownFormat = ownFormat;
+    }
+    
+    public synchronized void append(String[] record) throws IOException {
+        append(Collections.singletonList(record));
+    }
+    
+    // One write and one fsync for the whole batch
+    public synchronized void append(List<String[]> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        
+        StringBuilder lines = new StringBuilder();
+        for (String[] record : records) {
+            lines.append(CSVHandler.formatCSVLine(record)).append(System.lineSeparator());
+        }
+        
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        FileChannel out = openChannel();
+        long start = out.size();
+        try {
+            long position = start;
+            while (buffer.hasRemaining()) {
+                position += out.write(buffer, position);
+            }
+            out.force(false);
+        } catch (IOException e) {
+            // Take back whatever part of the batch got out, so the next append
+            // doesn't run on from a half-written line
+            try {
+                out.truncate(start);
+            } catch (IOException ignored) {
+                // Trimmed, or in a shared file ended, when the file is next opened
+            }
+            close();
+            throw e;
+        }
+        
+        if (entryCount >= 0) {
+            entryCount += records.size();
+        }
+    }
+    
+    // A journal of our own is only ever appended to and has no checksum footer
+    // to look for; a shared file may have one from its last rewrite
+    public synchronized void forEach(Consumer<CSVRow> handler) throws IOException {
+        if (!ownFormat) {
+            CSVHandler.streamCSV(path.toString(), false, handler);
+        } else if (Files.exists(path)) {
+            CSVHandler.streamVerifiedCSV(path.toString(), false, handler);
+        }
+    }
+    
+    public synchronized void truncate() throws IOException {
+        openChannel().truncate(0);
+        channel.force(true);
+        entryCount = 0;
+    }
+    
+    // Renames what has been appended so far to 'target' and starts afresh, so
+    // the entries can be folded in elsewhere while appends carry on
+    public synchronized void moveTo(String target) throws IOException {
+        close();
+        if (Files.exists(path)) {
+            Files.move(path, Paths.get(target), StandardCopyOption.ATOMIC_MOVE);
+        }
+        entryCount = 0;
+    }
+    
+    public synchronized long length() throws IOException {
+        return openChannel().size();
+    }
+    
+    // Drops everything appended after 'length', e.g. records whose companion
+    // write in another file failed. The entry count is recounted when next asked for.
+    public synchronized void truncate(long length) throws IOException {
+        openChannel().truncate(length);
+        channel.force(true);
+        entryCount = -1;
+    }
+    
+    public synchronized int getEntryCount() throws IOException {
+        if (entryCount < 0) {
+            entryCount = countEntries();
+        }
+        return entryCount;
+    }
+    
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+    
+    private FileChannel openChannel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (ownFormat) {
+                trimTornTail(channel);
+            } else {
+                terminateLastLine(channel);
+            }
+        }
+        return channel;
+    }
+    
+    // Ends the file with a newline if it doesn't already, so the next record
+    // starts on a line of its own
+    private static void terminateLastLine(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+        ByteBuffer last = ByteBuffer.allocate(1);
+        channel.read(last, size - 1);
+        if (last.get(0) != '\n') {
+            channel.write(ByteBuffer.wrap(System.lineSeparator().getBytes(StandardCharsets.UTF_8)), size);
+        }
+    }
+    
+    // A write cut short by a crash leaves a last line with no newline. It is
+    // dropped, so the next record starts on a line of its own.
+    private static void trimTornTail(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ByteBuffer block = ByteBuffer.allocate(4096);
+        long end = size;
+        
+        while (end > 0) {
+            long start = Math.max(0, end - block.capacity());
+            block.clear();
+            block.limit((int) (end - start));
+            while (block.hasRemaining() && channel.read(block, start + block.position()) >= 0) {
+                // Read the whole block
+            }
+            
+            for (int i = block.position() - 1; i >= 0; i--) {
+                if (block.get(i) == '\n') {
+                    if (start + i + 1 < size) {
+                        channel.truncate(start + i + 1);
+                    }
+                    return;
+                }
+            }
+            end = start;
+        }
+        
+        if (size > 0) {
+            channel.truncate(0);
+        }
+    }
+    
+    private int countEntries() throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        
+        int count = 0;
+        try (BufferedReader br = Files.newBufferedReader(path)) {
+            while (br.readLine() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
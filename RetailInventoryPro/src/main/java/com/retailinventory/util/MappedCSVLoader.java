@@ -0,0 +1,175 @@
+package com.retailinventory.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+// Loads large CSV files by memory-mapping them and parsing chunks in parallel.
+// Chunks are cut at newlines outside quoted fields, so rows never straddle two
+// chunks, and results come back in file order.
+public class MappedCSVLoader {
+    private static final long PARALLEL_THRESHOLD = 4L * 1024 * 1024;
+    private static final long MAX_CHUNK_SIZE = 16L * 1024 * 1024;
+    private static final int DECODE_BUFFER_SIZE = 64 * 1024;
+    
+    public static <T> List<T> load(String filePath, boolean skipHeader, Function<CSVRow, T> mapper)
+            throws IOException {
+        
+        Path path = Paths.get(filePath);
+        
+        if (!Files.exists(path)) {
+            return new ArrayList<>();
+        }
+        
+        CSVChecksum.verify(filePath);
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        
+        // Small files (or a single core) are not worth the thread hand-off
+        if (Files.size(path) < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            List<T> results = new ArrayList<>();
+            CSVHandler.streamVerifiedCSV(filePath, skipHeader, row -> addMapped(results, mapper, row));
+            return results;
+        }
+        
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] boundaries = findChunkBoundaries(channel, size, pool);
+            
+            List<ForkJoinTask<List<T>>> tasks = new ArrayList<>();
+            for (int i = 0; i < boundaries.length - 1; i++) {
+                long start = boundaries[i];
+                long end = boundaries[i + 1];
+                if (end <= start) continue;
+                
+                boolean skipFirstRow = skipHeader && start == 0;
+                tasks.add(pool.submit(() -> parseChunk(channel, start, end, skipFirstRow, mapper)));
+            }
+            
+            List<T> results = new ArrayList<>();
+            for (ForkJoinTask<List<T>> task : tasks) {
+                results.addAll(joinChunk(task));
+            }
+            return results;
+        }
+    }
+    
+    private static long[] findChunkBoundaries(FileChannel channel, long size, ForkJoinPool pool)
+            throws IOException {
+        
+        int chunkCount = (int) Math.max(pool.getParallelism() * 4L, (size + MAX_CHUNK_SIZE - 1) / MAX_CHUNK_SIZE);
+        long chunkSize = (size + chunkCount - 1) / chunkCount;
+        
+        // One pass per nominal chunk: quote parity plus the first newline seen
+        // at even and at odd local parity
+        List<ForkJoinTask<long[]>> scans = new ArrayList<>();
+        for (int i = 0; i < chunkCount; i++) {
+            long start = Math.min(size, i * chunkSize);
+            long end = Math.min(size, start + chunkSize);
+            scans.add(pool.submit(() -> scanRange(channel, start, end)));
+        }
+        
+        long[][] stats = new long[chunkCount][];
+        int[] parityBefore = new int[chunkCount];
+        int parity = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            stats[i] = joinChunk(scans.get(i));
+            parityBefore[i] = parity;
+            parity ^= (int) stats[i][0];
+        }
+        
+        long[] boundaries = new long[chunkCount + 1];
+        boundaries[chunkCount] = size;
+        for (int i = 1; i < chunkCount; i++) {
+            boundaries[i] = size;
+            // A newline is a row break when the quotes before it are balanced
+            for (int k = i; k < chunkCount; k++) {
+                long newline = stats[k][1 + parityBefore[k]];
+                if (newline >= 0) {
+                    boundaries[i] = newline + 1;
+                    break;
+                }
+            }
+        }
+        return boundaries;
+    }
+    
+    private static long[] scanRange(FileChannel channel, long start, long end) throws IOException {
+        long[] result = {0, -1, -1};
+        if (end <= start) {
+            return result;
+        }
+        
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        int parity = 0;
+        for (int i = 0, n = buffer.limit(); i < n; i++) {
+            byte b = buffer.get(i);
+            if (b == '"') {
+                parity ^= 1;
+            } else if (b == '\n' && result[1 + parity] < 0) {
+                result[1 + parity] = start + i;
+            }
+        }
+        result[0] = parity;
+        return result;
+    }
+    
+    private static <T> List<T> parseChunk(FileChannel channel, long start, long end,
+                                          boolean skipHeader, Function<CSVRow, T> mapper)
+            throws IOException {
+        
+        List<T> results = new ArrayList<>();
+        CSVParser parser = new CSVParser(row -> addMapped(results, mapper, row), skipHeader);
+        
+        ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        CharBuffer out = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        
+        while (true) {
+            CoderResult result = decoder.decode(in, out, true);
+            out.flip();
+            parser.feed(out);
+            out.clear();
+            if (result.isUnderflow()) break;
+        }
+        decoder.flush(out);
+        out.flip();
+        parser.feed(out);
+        parser.finish();
+        
+        return results;
+    }
+    
+    private static <T> void addMapped(List<T> results, Function<CSVRow, T> mapper, CSVRow row) {
+        T value = mapper.apply(row);
+        if (value != null) {
+            results.add(value);
+        }
+    }
+    
+    private static <V> V joinChunk(ForkJoinTask<V> task) throws IOException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading CSV");
+        } catch (java.util.concurrent.ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Failed to load CSV chunk", e.getCause());
+        }
+    }
+}
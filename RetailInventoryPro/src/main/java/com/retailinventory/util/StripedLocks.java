@@ -0,0 +1,45 @@
+package com.retailinventory.util;
+
+import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Fixed pool of locks shared out by key hash. Keys on different stripes never
+// contend, and memory stays constant however many keys there are.
+public class StripedLocks {
+    private final ReentrantLock[] locks;
+    private final int mask;
+    
+    public StripedLocks(int minimumStripes) {
+        int stripes = Integer.highestOneBit(Math.max(1, minimumStripes - 1)) << 1;
+        this.locks = new ReentrantLock[stripes];
+        this.mask = stripes - 1;
+        for (int i = 0; i < stripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+    
+    public Lock get(String key) {
+        return locks[stripeOf(key)];
+    }
+    
+    // The distinct locks covering 'keys', in stripe order. Everyone taking several
+    // locks goes through here, so they all lock in the same order and can't deadlock.
+    public List<Lock> getAll(Collection<String> keys) {
+        BitSet stripes = new BitSet(locks.length);
+        for (String key : keys) {
+            stripes.set(stripeOf(key));
+        }
+        
+        List<Lock> ordered = new ArrayList<>(stripes.cardinality());
+        for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+            ordered.add(locks[i]);
+        }
+        return ordered;
+    }
+    
+    public int stripeOf(String key) {
+        int h = key != null ? key.hashCode() : 0;
+        return (h ^ (h >>> 16)) & mask;
+    }
+}
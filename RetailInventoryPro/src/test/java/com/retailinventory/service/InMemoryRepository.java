@@ -0,0 +1,156 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Product;
+import com.retailinventory.model.Order;
+import com.retailinventory.model.Customer;
+import com.retailinventory.exception.FileProcessingException;
+import java.util.*;
+
+// A DataRepository kept in memory, for tests. Products are stored as copies,
+// so a test sees what was saved rather than the live objects. Saves can be
+// made to fail to exercise rollback paths.
+class InMemoryRepository implements DataRepository {
+    final Map<String, Product> products = new LinkedHashMap<>();
+    final Map<String, Order> orders = new LinkedHashMap<>();
+    final Map<String, Customer> customers = new LinkedHashMap<>();
+    final Map<String, SalesRollups.Row> rollups = new LinkedHashMap<>();
+    final List<String> movements = new ArrayList<>();
+    
+    volatile boolean failProductSaves;
+    volatile boolean failOrderSaves;
+    int productSaves;
+    
+    @Override
+    public synchronized List<Product> loadProducts() {
+        List<Product> loaded = new ArrayList<>();
+        for (Product product : products.values()) {
+            loaded.add(product.copy());
+        }
+        return loaded;
+    }
+    
+    @Override
+    public void saveProduct(Product product) throws FileProcessingException {
+        saveProductChanges(Collections.singletonList(product), Collections.emptyList());
+    }
+    
+    @Override
+    public synchronized void saveAllProducts(List<Product> all) throws FileProcessingException {
+        checkProductSave();
+        products.clear();
+        for (Product product : all) {
+            products.put(product.getProductId(), product.copy());
+        }
+    }
+    
+    @Override
+    public void saveProducts(List<Product> changed) throws FileProcessingException {
+        saveProductChanges(changed, Collections.emptyList());
+    }
+    
+    @Override
+    public void deleteProduct(String productId) throws FileProcessingException {
+        saveProductChanges(Collections.emptyList(), Collections.singletonList(productId));
+    }
+    
+    @Override
+    public synchronized void saveProductChanges(List<Product> saved, List<String> deleted) 
+            throws FileProcessingException {
+        checkProductSave();
+        for (Product product : saved) {
+            products.put(product.getProductId(), product.copy());
+        }
+        for (String productId : deleted) {
+            products.remove(productId);
+        }
+    }
+    
+    @Override
+    public synchronized void logStockMovement(String productId, String movementType,
+                                              int quantityChange, int newQuantity, String reference) {
+        movements.add(movementType + " " + productId + " " + quantityChange + " " + newQuantity);
+    }
+    
+    @Override
+    public void saveLowStockAlert(Product product) {
+    }
+    
+    @Override
+    public synchronized List<Order> loadOrders() {
+        return new ArrayList<>(orders.values());
+    }
+    
+    @Override
+    public void saveOrder(Order order) throws FileProcessingException {
+        saveOrders(Collections.singletonList(order));
+    }
+    
+    @Override
+    public synchronized void saveOrders(List<Order> saved) throws FileProcessingException {
+        if (failOrderSaves) {
+            throw new FileProcessingException("Order save failed");
+        }
+        for (Order order : saved) {
+            orders.put(order.getOrderId(), order);
+        }
+    }
+    
+    @Override
+    public synchronized void updateOrder(Order order) throws FileProcessingException {
+        saveOrders(Collections.singletonList(order));
+    }
+    
+    @Override
+    public synchronized List<SalesRollups.Row> loadSalesRollups() {
+        return new ArrayList<>(rollups.values());
+    }
+    
+    @Override
+    public synchronized void saveSalesRollups(List<SalesRollups.Row> rows) {
+        for (SalesRollups.Row row : rows) {
+            rollups.put(row.getDate() + "," + row.getDimension() + "," + row.getKey(), row);
+        }
+    }
+    
+    @Override
+    public synchronized void saveAllSalesRollups(List<SalesRollups.Row> rows) {
+        rollups.clear();
+        saveSalesRollups(rows);
+    }
+    
+    @Override
+    public synchronized List<Customer> loadCustomers() {
+        return new ArrayList<>(customers.values());
+    }
+    
+    @Override
+    public void saveCustomer(Customer customer) {
+        saveCustomers(Collections.singletonList(customer));
+    }
+    
+    @Override
+    public synchronized void saveCustomers(List<Customer> saved) {
+        for (Customer customer : saved) {
+            customers.put(customer.getCustomerId(), customer);
+        }
+    }
+    
+    @Override
+    public void createBackup() {
+    }
+    
+    @Override
+    public void generateDailyReport() {
+    }
+    
+    synchronized Product saved(String productId) {
+        return products.get(productId);
+    }
+    
+    private void checkProductSave() throws FileProcessingException {
+        if (failProductSaves) {
+            throw new FileProcessingException("Product save failed");
+        }
+        productSaves++;
+    }
+}
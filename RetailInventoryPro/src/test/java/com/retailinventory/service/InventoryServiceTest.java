@@ -0,0 +1,145 @@
+package com.retailinventory.service;
+
+import com.retailinventory.exception.InsufficientStockException;
+import com.retailinventory.exception.InventoryException;
+import com.retailinventory.model.OrderItem;
+import com.retailinventory.model.Product;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class InventoryServiceTest {
+    private InMemoryRepository repository;
+    private InventoryService inventory;
+    
+    @Before
+    public void setUp() throws Exception {
+        repository = new InMemoryRepository();
+        repository.saveAllProducts(Arrays.asList(
+            product("P1", 0),
+            product("P2", 2)));
+        inventory = new InventoryService(new DataStore(repository));
+        
+        // P1's ten units are in two lots
+        inventory.addStock("P1", 4, "B1", LocalDate.now().plusDays(10));
+        inventory.addStock("P1", 6, "B2", LocalDate.now().plusDays(40));
+    }
+    
+    @Test
+    public void sellsEveryLine() throws InventoryException {
+        inventory.sellProducts(Arrays.asList(item("P1", 5), item("P2", 2)), "C1", "T1");
+        
+        assertEquals(5, inventory.getProduct("P1").getQuantityInStock());
+        assertEquals(0, inventory.getProduct("P2").getQuantityInStock());
+        assertEquals(5, repository.saved("P1").getQuantityInStock());
+        assertEquals(5, repository.saved("P1").getQuantitySold());
+        assertEquals(0, repository.saved("P2").getQuantityInStock());
+        
+        // First expiring lot first
+        assertEquals(1, repository.saved("P1").getLots().size());
+        assertEquals(5, repository.saved("P1").getLots().getQuantity(0));
+    }
+    
+    @Test
+    public void sellsNothingWhenOneLineIsShort() throws InventoryException {
+        int saves = repository.productSaves;
+        String lots = inventory.getProduct("P1").getLots().encode();
+        
+        try {
+            inventory.sellProducts(Arrays.asList(item("P1", 3), item("P2", 5)), "C1", "T1");
+            fail("Expected the short line to fail the sale");
+        } catch (InsufficientStockException e) {
+            assertEquals("P2", e.getProductId());
+        }
+        
+        assertUnchanged(lots);
+        assertEquals(saves, repository.productSaves);
+    }
+    
+    @Test
+    public void sellsNothingWhenAProductIsUnknown() throws InventoryException {
+        String lots = inventory.getProduct("P1").getLots().encode();
+        
+        try {
+            inventory.sellProducts(Arrays.asList(item("P1", 3), item("P9", 1)), "C1", "T1");
+            fail("Expected the unknown product to fail the sale");
+        } catch (InventoryException e) {
+            assertTrue(e.getMessage().contains("P9"));
+        }
+        
+        assertUnchanged(lots);
+    }
+    
+    @Test
+    public void checksRepeatedProductAgainstItsCombinedQuantity() throws InventoryException {
+        String lots = inventory.getProduct("P1").getLots().encode();
+        
+        try {
+            inventory.sellProducts(Arrays.asList(item("P2", 1), item("P1", 6), item("P1", 5)), "C1", "T1");
+            fail("Expected eleven units of P1 to be more than its stock");
+        } catch (InsufficientStockException e) {
+            assertEquals(11, e.getRequested());
+        }
+        
+        assertUnchanged(lots);
+    }
+    
+    @Test
+    public void putsEveryLineBackWhenTheSaveFails() {
+        String lots = inventory.getProduct("P1").getLots().encode();
+        repository.failProductSaves = true;
+        
+        try {
+            inventory.sellProducts(Arrays.asList(item("P1", 7), item("P2", 1)), "C1", "T1");
+            fail("Expected the failed save to fail the sale");
+        } catch (InventoryException e) {
+            // Expected
+        }
+        
+        assertUnchanged(lots);
+        assertEquals(10, repository.saved("P1").getQuantityInStock());
+    }
+    
+    @Test
+    public void keepsReservedStockForItsOrder() throws InventoryException {
+        inventory.reserveProducts("O1", Collections.singletonList(item("P2", 2)));
+        
+        try {
+            inventory.sellProducts(Collections.singletonList(item("P2", 1)), "C1", "T1");
+            fail("Expected held units to be unavailable to other sales");
+        } catch (InsufficientStockException e) {
+            assertEquals(0, e.getAvailable());
+        }
+        
+        inventory.sellProducts(Collections.singletonList(item("P2", 2)), "C1", "O1");
+        assertEquals(0, inventory.getProduct("P2").getQuantityInStock());
+        assertEquals(0, inventory.getAvailableQuantity("P2"));
+    }
+    
+    private void assertUnchanged(String lots) {
+        Product p1 = inventory.getProduct("P1");
+        Product p2 = inventory.getProduct("P2");
+        assertEquals(10, p1.getQuantityInStock());
+        assertEquals(0, p1.getQuantitySold());
+        assertEquals(lots, p1.getLots().encode());
+        assertEquals(2, p2.getQuantityInStock());
+        assertEquals(0, p2.getQuantitySold());
+    }
+    
+    private static Product product(String id, int quantity) {
+        Product product = new Product("Product " + id, "Grocery", 1.00, 2.00, quantity);
+        product.setProductId(id);
+        product.setBarcode("BC" + id);
+        product.setPerishable(true);
+        product.setMinStockLevel(0);
+        return product;
+    }
+    
+    private static OrderItem item(String productId, int quantity) {
+        return new OrderItem(productId, "Product " + productId, 2.00, quantity);
+    }
+}
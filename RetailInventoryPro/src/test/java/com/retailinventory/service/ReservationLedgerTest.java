@@ -0,0 +1,93 @@
+package com.retailinventory.service;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ReservationLedgerTest {
+    private static final long TICK_MILLIS = 10;
+    
+    @Test
+    public void holdsUntilReleased() {
+        ReservationLedger ledger = new ReservationLedger(60_000, TICK_MILLIS);
+        ledger.reserve("O1", quantities("P1", 3, "P2", 1));
+        ledger.reserve("O2", quantities("P1", 2));
+        
+        assertEquals(5, ledger.getReserved("P1"));
+        assertEquals(3, ledger.getHeld("O1", "P1"));
+        assertEquals(2, ledger.getHoldCount());
+        
+        assertEquals(quantities("P1", 3, "P2", 1), ledger.release("O1"));
+        assertEquals(2, ledger.getReserved("P1"));
+        assertEquals(0, ledger.getReserved("P2"));
+        assertNull(ledger.release("O1"));
+    }
+    
+    @Test
+    public void replacesAnOrdersEarlierHold() {
+        ReservationLedger ledger = new ReservationLedger(60_000, TICK_MILLIS);
+        ledger.reserve("O1", quantities("P1", 3));
+        ledger.reserve("O1", quantities("P1", 1, "P2", 4));
+        
+        assertEquals(1, ledger.getReserved("P1"));
+        assertEquals(4, ledger.getReserved("P2"));
+        assertEquals(1, ledger.getHoldCount());
+    }
+    
+    @Test
+    public void expiresAfterItsTtl() throws InterruptedException {
+        ReservationLedger ledger = new ReservationLedger(60_000, TICK_MILLIS);
+        ledger.reserve("O1", quantities("P1", 3), 50);
+        ledger.reserve("O2", quantities("P1", 2));
+        
+        awaitHoldCount(ledger, 1, 5_000);
+        
+        assertEquals(0, ledger.getHeld("O1", "P1"));
+        assertEquals(2, ledger.getReserved("P1"));
+        assertNull(ledger.release("O1"));
+        assertNotNull(ledger.release("O2"));
+    }
+    
+    @Test
+    public void doesNotExpireEarly() throws InterruptedException {
+        ReservationLedger ledger = new ReservationLedger(60_000, TICK_MILLIS);
+        ledger.reserve("O1", quantities("P1", 3), 500);
+        
+        Thread.sleep(100);
+        assertEquals(3, ledger.getReserved("P1"));
+    }
+    
+    @Test
+    public void expiresManyHoldsOnce() throws InterruptedException {
+        ReservationLedger ledger = new ReservationLedger(60_000, TICK_MILLIS);
+        for (int i = 0; i < 1_000; i++) {
+            ledger.reserve("O" + i, quantities("P1", 1), 20 + i % 50);
+        }
+        // Released ones are never expired a second time
+        for (int i = 0; i < 1_000; i += 2) {
+            ledger.release("O" + i);
+        }
+        
+        awaitHoldCount(ledger, 0, 5_000);
+        assertEquals(0, ledger.getReserved("P1"));
+    }
+    
+    private static void awaitHoldCount(ReservationLedger ledger, int count, long timeoutMillis) 
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (ledger.getHoldCount() != count) {
+            assertTrue("Holds not expired in time", System.currentTimeMillis() < deadline);
+            Thread.sleep(TICK_MILLIS);
+        }
+    }
+    
+    private static Map<String, Integer> quantities(Object... pairs) {
+        Map<String, Integer> quantities = new HashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            quantities.put((String) pairs[i], (Integer) pairs[i + 1]);
+        }
+        return quantities;
+    }
+}
@@ -0,0 +1,170 @@
+package com.retailinventory.service;
+
+import com.retailinventory.model.Order;
+import com.retailinventory.model.OrderItem;
+import com.retailinventory.model.Product;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SalesRollupsTest {
+    private static final double DELTA = 1e-6;
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 3, 1);
+    
+    private InMemoryRepository repository;
+    private DataStore dataStore;
+    private OrderService orderService;
+    
+    @Before
+    public void setUp() throws Exception {
+        repository = new InMemoryRepository();
+        repository.saveAllProducts(Arrays.asList(
+            product("P1", "Dairy"), 
+            product("P2", "Bakery")));
+        
+        // Five days of orders, some placed exactly at midnight, and some
+        // pending or cancelled, which don't count
+        int n = 0;
+        for (int day = 0; day < 5; day++) {
+            LocalDate date = FIRST_DAY.plusDays(day);
+            for (LocalTime time : new LocalTime[]{LocalTime.MIDNIGHT, LocalTime.of(9, 15), LocalTime.of(23, 59, 59)}) {
+                String status = n % 7 == 3 ? "PENDING" : n % 7 == 5 ? "CANCELLED" : "COMPLETED";
+                repository.saveOrder(order("O" + n, date.atTime(time), status, n % 2 == 0 ? "Cash" : "Card", 
+                    item("P1", "Dairy", 1 + n % 3), item("P2", n % 4 == 0 ? null : "Bakery", 2)));
+                n++;
+            }
+        }
+        
+        dataStore = new DataStore(repository);
+        orderService = new OrderService(dataStore);
+    }
+    
+    @Test
+    public void wholeDayTotalsMatchOrderScan() {
+        for (int from = 0; from < 5; from++) {
+            for (int to = from + 1; to <= 6; to++) {
+                LocalDateTime start = FIRST_DAY.plusDays(from).atStartOfDay();
+                LocalDateTime end = FIRST_DAY.plusDays(to).atStartOfDay();
+                assertTotals(scan(start, end), orderService.getSalesTotals(start, end));
+            }
+        }
+    }
+    
+    @Test
+    public void partialDayTotalsMatchOrderScan() {
+        LocalDateTime start = FIRST_DAY.atTime(9, 0);
+        LocalDateTime end = FIRST_DAY.plusDays(2).atTime(9, 15);
+        assertTotals(scan(start, end), orderService.getSalesTotals(start, end));
+    }
+    
+    @Test
+    public void categoryTotalsMatchOrderScan() {
+        LocalDateTime start = FIRST_DAY.plusDays(1).atStartOfDay();
+        LocalDateTime end = FIRST_DAY.plusDays(4).atStartOfDay();
+        
+        Map<String, Double> expected = new HashMap<>();
+        for (Order order : completedOrders(start, end)) {
+            for (OrderItem item : order.getItems()) {
+                String category = item.getCategory() != null ? item.getCategory() 
+                    : dataStore.getProducts().get(item.getProductId()).getCategory();
+                expected.merge(category, item.getSubtotal(), Double::sum);
+            }
+        }
+        
+        Map<String, Double> actual = orderService.getSalesByCategory(start, end);
+        assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((category, revenue) -> assertEquals(category, revenue, actual.get(category), DELTA));
+    }
+    
+    @Test
+    public void staysMatchedAsOrdersAreCompletedAndCancelled() throws Exception {
+        Order order = orderService.createOrder("C1", Collections.singletonList(item("P1", "Dairy", 4)));
+        LocalDateTime start = order.getOrderDate().toLocalDate().atStartOfDay();
+        LocalDateTime end = start.plusDays(1);
+        
+        orderService.processOrder(order.getOrderId());
+        assertEquals(1, orderService.getSalesTotals(start, end).getTransactions());
+        assertTotals(scan(start, end), orderService.getSalesTotals(start, end));
+        
+        orderService.cancelOrder(order.getOrderId());
+        assertEquals(0, orderService.getSalesTotals(start, end).getTransactions());
+        assertTotals(scan(start, end), orderService.getSalesTotals(start, end));
+    }
+    
+    @Test
+    public void savedRowsReadBackToTheSameTotals() {
+        LocalDate start = FIRST_DAY;
+        LocalDate end = FIRST_DAY.plusDays(4);
+        SalesRollups.Totals before = orderService.getSalesTotals(start, end);
+        
+        SalesRollups reloaded = new SalesRollups(repository, dataStore.getProducts());
+        reloaded.load(repository.loadOrders());
+        
+        assertTotals(before, reloaded.getTotals(start, end));
+        assertEquals(orderService.getSalesByPaymentMethod(start, end).keySet(), 
+            reloaded.getByPaymentMethod(start, end).keySet());
+    }
+    
+    // What the rollups stand in for: every completed order in the range, end inclusive
+    private SalesRollups.Totals scan(LocalDateTime start, LocalDateTime end) {
+        SalesRollups.Totals totals = new SalesRollups.Totals();
+        for (Order order : completedOrders(start, end)) {
+            totals.add(order);
+        }
+        return totals;
+    }
+    
+    private List<Order> completedOrders(LocalDateTime start, LocalDateTime end) {
+        List<Order> orders = new ArrayList<>();
+        for (Order order : dataStore.getOrders().values()) {
+            if (order.getStatus().equals("COMPLETED") 
+                    && !order.getOrderDate().isBefore(start) && !order.getOrderDate().isAfter(end)) {
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+    
+    private static void assertTotals(SalesRollups.Totals expected, SalesRollups.Totals actual) {
+        assertEquals(expected.getTransactions(), actual.getTransactions());
+        assertEquals(expected.getItems(), actual.getItems());
+        assertEquals(expected.getRevenue(), actual.getRevenue(), DELTA);
+        assertEquals(expected.getTax(), actual.getTax(), DELTA);
+        assertEquals(expected.getDiscount(), actual.getDiscount(), DELTA);
+    }
+    
+    private static Order order(String id, LocalDateTime date, String status, String payment, OrderItem... items) {
+        Order order = new Order();
+        order.setOrderId(id);
+        order.setCustomerId("C1");
+        order.setOrderDate(date);
+        order.setPaymentMethod(payment);
+        for (OrderItem item : items) {
+            order.addItem(item);
+        }
+        order.setStatus(status);
+        if (status.equals("COMPLETED")) {
+            order.setCompletionDate(date);
+        }
+        return order;
+    }
+    
+    private static OrderItem item(String productId, String category, int quantity) {
+        OrderItem item = new OrderItem(productId, "Product " + productId, 2.50, quantity);
+        item.setCategory(category);
+        return item;
+    }
+    
+    private static Product product(String id, String category) {
+        Product product = new Product("Product " + id, category, 1.00, 2.50, 100);
+        product.setProductId(id);
+        product.setBarcode("BC" + id);
+        return product;
+    }
+}
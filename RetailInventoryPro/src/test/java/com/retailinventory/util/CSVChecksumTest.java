@@ -0,0 +1,124 @@
+package com.retailinventory.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CSVChecksumTest {
+    private Path file;
+    
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("checksum-test", ".csv");
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    @Test
+    public void acceptsFileAsWritten() throws IOException {
+        write(rows(100));
+        
+        CSVChecksum.verify(file.toString());
+        long[] footer = CSVChecksum.findFooter(file);
+        assertNotNull(footer);
+        assertEquals(Files.size(file), footer[2]);
+    }
+    
+    @Test(expected = IOException.class)
+    public void rejectsChangedByteBeforeFooter() throws IOException {
+        write(rows(100));
+        
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[20] = (byte) (bytes[20] == 'X' ? 'Y' : 'X');
+        Files.write(file, bytes);
+        
+        CSVChecksum.verify(file.toString());
+    }
+    
+    @Test(expected = IOException.class)
+    public void streamingRefusesCorruptFile() throws IOException {
+        write(rows(10));
+        
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[15]++;
+        Files.write(file, bytes);
+        
+        CSVHandler.streamCSV(file.toString(), true, row -> { });
+    }
+    
+    @Test
+    public void acceptsRowsAppendedAfterFooter() throws IOException {
+        write(rows(10));
+        Files.write(file, "P10,Appended\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        
+        List<String> ids = new ArrayList<>();
+        CSVHandler.streamCSV(file.toString(), true, row -> ids.add(row.get(0)));
+        assertEquals(11, ids.size());
+        assertEquals("P10", ids.get(10));
+    }
+    
+    @Test
+    public void acceptsFileWithoutFooter() throws IOException {
+        CSVHandler.writeCSV(file.toString(), rows(10), false);
+        
+        CSVChecksum.verify(file.toString());
+        assertNull(CSVChecksum.findFooter(file));
+    }
+    
+    @Test
+    public void valueCannotPassForFooter() throws IOException {
+        List<String[]> rows = rows(3);
+        rows.add(new String[]{CSVChecksum.footer(0, 0), "x"});
+        CSVHandler.writeCSV(file.toString(), rows, false);
+        
+        assertNull(CSVChecksum.findFooter(file));
+    }
+    
+    @Test
+    public void findsFooterAtItsOffset() throws IOException {
+        write(rows(10));
+        long[] footer = CSVChecksum.findFooter(file);
+        
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertArrayEquals(footer, CSVChecksum.readFooterAt(channel, footer[1]));
+            assertNull(CSVChecksum.readFooterAt(channel, 0));
+        }
+    }
+    
+    @Test
+    public void rewriteLeavesNoTemporaryFiles() throws IOException {
+        write(rows(10));
+        write(rows(5));
+        
+        try (DirectoryStream<Path> siblings = 
+                Files.newDirectoryStream(file.getParent(), file.getFileName() + "*")) {
+            Iterator<Path> files = siblings.iterator();
+            assertEquals(file, files.next());
+            assertFalse(files.hasNext());
+        }
+    }
+    
+    private void write(List<String[]> rows) throws IOException {
+        CSVHandler.writeChecksummedCSV(file.toString(), rows);
+    }
+    
+    private static List<String[]> rows(int count) {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[]{"ProductID", "Name"});
+        for (int i = 0; i < count; i++) {
+            rows.add(new String[]{"P" + i, "Product " + i});
+        }
+        return rows;
+    }
+}
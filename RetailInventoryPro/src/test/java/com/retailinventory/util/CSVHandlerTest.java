@@ -0,0 +1,60 @@
+package com.retailinventory.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CSVHandlerTest {
+    private Path file;
+    
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("csv-handler-test", ".csv");
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    @Test
+    public void streamsRowsUpToAGivenLength() throws IOException {
+        CSVHandler.writeChecksummedCSV(file.toString(), Arrays.asList(
+            new String[]{"OrderID", "Status"},
+            new String[]{"O1", "PENDING"}));
+        append("O2,COMPLETED\n");
+        long length = Files.size(file);
+        append("O3,PENDING\n");
+        
+        List<String> ids = new ArrayList<>();
+        CSVHandler.streamCSVTo(file.toString(), length, true, row -> ids.add(row.get(0)));
+        
+        assertEquals(Arrays.asList("O1", "O2"), ids);
+    }
+    
+    @Test
+    public void streamsRowsFromAGivenOffset() throws IOException {
+        CSVHandler.writeChecksummedCSV(file.toString(), Arrays.asList(
+            new String[]{"OrderID", "Status"},
+            new String[]{"O1", "PENDING"}));
+        long offset = Files.size(file);
+        append("O2,COMPLETED\nO3,\"PENDING,\nnote\"\n");
+        
+        List<String[]> rows = new ArrayList<>();
+        CSVHandler.streamCSVFrom(file.toString(), offset, row -> rows.add(row.toArray()));
+        
+        assertEquals(2, rows.size());
+        assertArrayEquals(new String[]{"O3", "PENDING,\nnote"}, rows.get(1));
+    }
+    
+    private void append(String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+    }
+}
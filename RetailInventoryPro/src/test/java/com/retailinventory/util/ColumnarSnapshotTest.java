@@ -0,0 +1,191 @@
+package com.retailinventory.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class ColumnarSnapshotTest {
+    private Path dir;
+    private String csvFile;
+    private String snapshotFile;
+    
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("snapshot-test");
+        csvFile = dir.resolve("items.csv").toString();
+        snapshotFile = dir.resolve("items.snapshot").toString();
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+    
+    @Test
+    public void readsBackEveryColumnType() throws IOException {
+        List<Item> items = Arrays.asList(
+            new Item("A1", 3, 1.25, true, LocalDate.of(2024, 2, 29), LocalDateTime.of(2024, 3, 1, 9, 30, 15)),
+            new Item(null, -7, 0.0, false, null, null),
+            new Item("Crème, \"brûlée\"", Integer.MAX_VALUE, -2.5e9, true, LocalDate.of(1999, 12, 31), 
+                LocalDateTime.of(2030, 1, 1, 0, 0)));
+        writeSource(items);
+        write(items, csvFile);
+        
+        ColumnarSnapshot.Reader reader = ColumnarSnapshot.read(snapshotFile, csvFile);
+        assertNotNull(reader);
+        assertEquals(3, reader.getRowCount());
+        assertEquals(Files.size(Paths.get(csvFile)), reader.getCoveredLength());
+        
+        String[] names = reader.strings();
+        int[] counts = reader.ints();
+        double[] prices = reader.doubles();
+        boolean[] flags = reader.booleans();
+        LocalDate[] dates = reader.dates();
+        LocalDateTime[] times = reader.dateTimes();
+        for (int i = 0; i < items.size(); i++) {
+            Item item = items.get(i);
+            assertEquals(item.name, names[i]);
+            assertEquals(item.count, counts[i]);
+            assertEquals(item.price, prices[i], 0.0);
+            assertEquals(item.flag, flags[i]);
+            assertEquals(item.date, dates[i]);
+            assertEquals(item.time, times[i]);
+        }
+    }
+    
+    @Test
+    public void staysCurrentWhenRowsAreAppendedAfterTheFooter() throws IOException {
+        List<Item> items = Collections.singletonList(item("A1"));
+        writeSource(items);
+        write(items, csvFile);
+        long covered = Files.size(Paths.get(csvFile));
+        
+        Files.write(Paths.get(csvFile), "A2\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        
+        ColumnarSnapshot.Reader reader = ColumnarSnapshot.read(snapshotFile, csvFile);
+        assertNotNull(reader);
+        assertEquals(covered, reader.getCoveredLength());
+    }
+    
+    @Test
+    public void coversOnlyTheGivenLengthOfAnAppendedFile() throws IOException {
+        List<Item> items = Collections.singletonList(item("A1"));
+        writeSource(items);
+        Files.write(Paths.get(csvFile), "A2\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        long covered = Files.size(Paths.get(csvFile));
+        Files.write(Paths.get(csvFile), "A3\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        
+        write(Arrays.asList(item("A1"), item("A2")), csvFile, covered);
+        
+        ColumnarSnapshot.Reader reader = ColumnarSnapshot.read(snapshotFile, csvFile);
+        assertNotNull(reader);
+        assertEquals(2, reader.getRowCount());
+        assertEquals(covered, reader.getCoveredLength());
+    }
+    
+    @Test
+    public void isStaleAfterTheSourceIsRewritten() throws IOException {
+        writeSource(Collections.singletonList(item("A1")));
+        write(Collections.singletonList(item("A1")), csvFile);
+        
+        writeSource(Collections.singletonList(item("B1")));
+        
+        assertNull(ColumnarSnapshot.read(snapshotFile, csvFile));
+    }
+    
+    @Test
+    public void isStaleAfterACoveredAppendedRowChanges() throws IOException {
+        writeSource(Collections.singletonList(item("A1")));
+        Files.write(Paths.get(csvFile), "A2\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        write(Arrays.asList(item("A1"), item("A2")), csvFile);
+        
+        // Same length, different bytes after the footer
+        byte[] bytes = Files.readAllBytes(Paths.get(csvFile));
+        bytes[bytes.length - 2] = '3';
+        Files.write(Paths.get(csvFile), bytes);
+        
+        assertNull(ColumnarSnapshot.read(snapshotFile, csvFile));
+    }
+    
+    @Test
+    public void isStaleWhenTheSourceIsMissingOrShorter() throws IOException {
+        writeSource(Collections.singletonList(item("A1")));
+        Files.write(Paths.get(csvFile), "A2\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        write(Arrays.asList(item("A1"), item("A2")), csvFile);
+        
+        writeSource(Collections.singletonList(item("A1")));
+        assertNull(ColumnarSnapshot.read(snapshotFile, csvFile));
+        
+        Files.delete(Paths.get(csvFile));
+        assertNull(ColumnarSnapshot.read(snapshotFile, csvFile));
+    }
+    
+    @Test
+    public void isNotWrittenForAMissingSource() throws IOException {
+        write(Collections.singletonList(item("A1")), csvFile);
+        assertFalse(Files.exists(Paths.get(snapshotFile)));
+    }
+    
+    private void writeSource(List<Item> items) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(new String[]{"Name"});
+        for (Item item : items) {
+            rows.add(new String[]{item.name});
+        }
+        CSVHandler.writeChecksummedCSV(csvFile, rows);
+    }
+    
+    private void write(List<Item> items, String sourceFile) throws IOException {
+        writer(items).writeTo(snapshotFile, sourceFile);
+    }
+    
+    private void write(List<Item> items, String sourceFile, long coveredLength) throws IOException {
+        writer(items).writeTo(snapshotFile, sourceFile, coveredLength);
+    }
+    
+    private static ColumnarSnapshot.Writer<Item> writer(List<Item> items) throws IOException {
+        return new ColumnarSnapshot.Writer<>(items)
+            .strings(item -> item.name)
+            .ints(item -> item.count)
+            .doubles(item -> item.price)
+            .booleans(item -> item.flag)
+            .dates(item -> item.date)
+            .dateTimes(item -> item.time);
+    }
+    
+    private static Item item(String name) {
+        return new Item(name, 1, 1.0, false, null, null);
+    }
+    
+    private static class Item {
+        final String name;
+        final int count;
+        final double price;
+        final boolean flag;
+        final LocalDate date;
+        final LocalDateTime time;
+        
+        Item(String name, int count, double price, boolean flag, LocalDate date, LocalDateTime time) {
+            this.name = name;
+            this.count = count;
+            this.price = price;
+            this.flag = flag;
+            this.date = date;
+            this.time = time;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.retailinventory.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class IdGeneratorTest {
+    private static final long EPOCH = 1704067200000L;
+    private static final int MILLIS_SHIFT = 22;
+    
+    private Path dir;
+    private String markFile;
+    
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ids");
+        markFile = dir.resolve("node.mark").toString();
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+    
+    @Test
+    public void issuesIncreasingIds() {
+        IdGenerator ids = new IdGenerator(1, markFile);
+        long previous = ids.next();
+        // Well past 4096 in a millisecond, so the sequence carries over
+        for (int i = 0; i < 50_000; i++) {
+            long id = ids.next();
+            assertTrue(id > previous);
+            previous = id;
+        }
+    }
+    
+    @Test
+    public void resumesAboveEveryIdIssuedBeforeRestart() {
+        IdGenerator ids = new IdGenerator(1, markFile);
+        long highest = 0;
+        for (int i = 0; i < 50_000; i++) {
+            highest = ids.next();
+        }
+        
+        for (int restart = 0; restart < 3; restart++) {
+            IdGenerator restarted = new IdGenerator(1, markFile);
+            long id = restarted.next();
+            assertTrue(id > highest);
+            highest = id;
+        }
+    }
+    
+    @Test
+    public void resumesAboveMarkWhenClockIsBehind() throws IOException {
+        // As if the clock was set back an hour since the mark was saved
+        long mark = System.currentTimeMillis() - EPOCH + TimeUnit.HOURS.toMillis(1);
+        Files.writeString(Paths.get(markFile), Long.toString(mark));
+        
+        IdGenerator ids = new IdGenerator(1, markFile);
+        assertTrue(ids.next() >>> MILLIS_SHIFT > mark);
+        assertTrue(Long.parseLong(Files.readString(Paths.get(markFile)).trim()) > mark);
+    }
+    
+    @Test
+    public void ignoresUnreadableMark() throws IOException {
+        Files.writeString(Paths.get(markFile), "not a number");
+        
+        long id = new IdGenerator(1, markFile).next();
+        assertTrue(id >>> MILLIS_SHIFT >= System.currentTimeMillis() - EPOCH - 1000);
+    }
+    
+    @Test
+    public void keepsNodesApart() {
+        long a = new IdGenerator(1, markFile).next();
+        long b = new IdGenerator(2, dir.resolve("other.mark").toString()).next();
+        
+        assertEquals(1, (a >>> 12) & IdGenerator.MAX_NODE);
+        assertEquals(2, (b >>> 12) & IdGenerator.MAX_NODE);
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNodeOutOfRange() {
+        new IdGenerator(IdGenerator.MAX_NODE + 1, markFile);
+    }
+    
+    @Test
+    public void concurrentCallersGetUniqueIds() throws Exception {
+        IdGenerator ids = new IdGenerator(1, markFile);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<long[]>> batches = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            batches.add(pool.submit(() -> {
+                long[] batch = new long[20_000];
+                for (int i = 0; i < batch.length; i++) {
+                    batch[i] = ids.next();
+                }
+                return batch;
+            }));
+        }
+        
+        Set<Long> seen = new HashSet<>();
+        for (Future<long[]> batch : batches) {
+            long[] issued = batch.get();
+            for (int i = 0; i < issued.length; i++) {
+                assertTrue(seen.add(issued[i]));
+                if (i > 0) {
+                    assertTrue(issued[i] > issued[i - 1]);
+                }
+            }
+        }
+        pool.shutdown();
+        assertEquals(80_000, seen.size());
+    }
+}
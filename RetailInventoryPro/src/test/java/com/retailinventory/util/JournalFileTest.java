@@ -0,0 +1,149 @@
+package com.retailinventory.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class JournalFileTest {
+    private Path dir;
+    private String journalFile;
+    
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("journal-test");
+        journalFile = dir.resolve("products.journal").toString();
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+    
+    @Test
+    public void replaysAppendedRecordsInOrder() throws IOException {
+        JournalFile journal = new JournalFile(journalFile);
+        journal.append(new String[]{"UPSERT", "P1", "Milk, 1L"});
+        journal.append(Arrays.asList(
+            new String[]{"UPSERT", "P2", "Bread"},
+            new String[]{"DELETE", "P1"}));
+        journal.close();
+        
+        List<String[]> rows = readAll(new JournalFile(journalFile));
+        assertEquals(3, rows.size());
+        assertArrayEquals(new String[]{"UPSERT", "P1", "Milk, 1L"}, rows.get(0));
+        assertArrayEquals(new String[]{"UPSERT", "P2", "Bread"}, rows.get(1));
+        assertArrayEquals(new String[]{"DELETE", "P1"}, rows.get(2));
+    }
+    
+    @Test
+    public void countsEntriesAcrossReopenAndTruncate() throws IOException {
+        JournalFile journal = new JournalFile(journalFile);
+        journal.append(new String[]{"UPSERT", "P1"});
+        journal.append(new String[]{"UPSERT", "P2"});
+        assertEquals(2, journal.getEntryCount());
+        journal.close();
+        
+        JournalFile reopened = new JournalFile(journalFile);
+        assertEquals(2, reopened.getEntryCount());
+        reopened.append(new String[]{"DELETE", "P2"});
+        assertEquals(3, reopened.getEntryCount());
+        
+        reopened.truncate();
+        assertEquals(0, reopened.getEntryCount());
+        assertTrue(readAll(reopened).isEmpty());
+        reopened.close();
+    }
+    
+    @Test
+    public void dropsTornLastLineBeforeNextAppend() throws IOException {
+        Files.write(Paths.get(journalFile), 
+            "UPSERT,P1,Milk\nUPSERT,P2,Bre".getBytes(StandardCharsets.UTF_8));
+        
+        JournalFile journal = new JournalFile(journalFile);
+        journal.append(new String[]{"UPSERT", "P3", "Eggs"});
+        journal.close();
+        
+        List<String[]> rows = readAll(new JournalFile(journalFile));
+        assertEquals(2, rows.size());
+        assertArrayEquals(new String[]{"UPSERT", "P1", "Milk"}, rows.get(0));
+        assertArrayEquals(new String[]{"UPSERT", "P3", "Eggs"}, rows.get(1));
+    }
+    
+    @Test
+    public void dropsJournalThatIsOnlyATornLine() throws IOException {
+        Files.write(Paths.get(journalFile), "UPSERT,P1,Mi".getBytes(StandardCharsets.UTF_8));
+        
+        JournalFile journal = new JournalFile(journalFile);
+        assertEquals(0, journal.length());
+        journal.close();
+    }
+    
+    @Test
+    public void truncatesBackToEarlierLength() throws IOException {
+        JournalFile journal = new JournalFile(journalFile);
+        journal.append(new String[]{"UPSERT", "P1"});
+        long length = journal.length();
+        journal.append(new String[]{"UPSERT", "P2"});
+        
+        journal.truncate(length);
+        assertEquals(1, journal.getEntryCount());
+        journal.close();
+        
+        List<String[]> rows = readAll(new JournalFile(journalFile));
+        assertEquals(1, rows.size());
+        assertEquals("P1", rows.get(0)[1]);
+    }
+    
+    @Test
+    public void movesEntriesAsideAndStartsAfresh() throws IOException {
+        String setAside = journalFile + ".compacting";
+        JournalFile journal = new JournalFile(journalFile);
+        journal.append(new String[]{"UPSERT", "P1"});
+        journal.append(new String[]{"UPSERT", "P2"});
+        
+        journal.moveTo(setAside);
+        assertEquals(0, journal.getEntryCount());
+        journal.append(new String[]{"DELETE", "P1"});
+        journal.close();
+        
+        List<String[]> movedRows = readAll(new JournalFile(setAside));
+        assertEquals(2, movedRows.size());
+        assertEquals("P2", movedRows.get(1)[1]);
+        List<String[]> rows = readAll(new JournalFile(journalFile));
+        assertEquals(1, rows.size());
+        assertArrayEquals(new String[]{"DELETE", "P1"}, rows.get(0));
+    }
+    
+    @Test
+    public void appendsToSharedFileOnANewLine() throws IOException {
+        // An edited CSV may lack its final newline; its last row is kept
+        Files.write(Paths.get(journalFile), "OrderID,Status\nO1,PENDING".getBytes(StandardCharsets.UTF_8));
+        
+        JournalFile appender = new JournalFile(journalFile, false);
+        appender.append(new String[]{"O2", "COMPLETED"});
+        appender.close();
+        
+        List<String[]> rows = readAll(new JournalFile(journalFile, false));
+        assertEquals(3, rows.size());
+        assertArrayEquals(new String[]{"O1", "PENDING"}, rows.get(1));
+        assertArrayEquals(new String[]{"O2", "COMPLETED"}, rows.get(2));
+    }
+    
+    private static List<String[]> readAll(JournalFile journal) throws IOException {
+        List<String[]> rows = new ArrayList<>();
+        journal.forEach(row -> rows.add(row.toArray()));
+        return rows;
+    }
+}
@@ -0,0 +1,77 @@
+package com.retailinventory.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class MappedCSVLoaderTest {
+    private Path file;
+    
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("mapped-loader-test", ".csv");
+    }
+    
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+    
+    @Test
+    public void keepsQuotedNewlinesInsideTheirRowsAcrossChunks() throws IOException {
+        // Well past the size at which the file is split into chunks, with a
+        // quoted newline in every other row so chunk cuts land near them
+        List<String[]> expected = new ArrayList<>();
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write("ID,Name,Description");
+            out.newLine();
+            for (int i = 0; i < 200_000; i++) {
+                String description = i % 2 == 0
+                    ? "Line one of " + i + "\nline two, with \"quotes\"\nline three"
+                    : "Plain description " + i;
+                String[] row = {"P" + i, "Product " + i, description};
+                expected.add(row);
+                out.write(CSVHandler.formatCSVLine(row));
+                out.write("\n");
+            }
+        }
+        assertTrue(Files.size(file) > 8L * 1024 * 1024);
+        
+        List<String[]> rows = MappedCSVLoader.load(file.toString(), true, CSVRow::toArray);
+        
+        assertEquals(expected.size(), rows.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertArrayEquals(expected.get(i), rows.get(i));
+        }
+    }
+    
+    @Test
+    public void matchesStreamingParserOnSmallFiles() throws IOException {
+        Files.write(file, ("ID,Note\n1,\"a\nb\"\n2,\"c,\"\"d\"\"\"\n3,e\n").getBytes(StandardCharsets.UTF_8));
+        
+        List<String[]> streamed = new ArrayList<>();
+        CSVHandler.streamCSV(file.toString(), true, row -> streamed.add(row.toArray()));
+        List<String[]> loaded = MappedCSVLoader.load(file.toString(), true, CSVRow::toArray);
+        
+        assertEquals(3, loaded.size());
+        assertArrayEquals(new String[]{"1", "a\nb"}, loaded.get(0));
+        assertArrayEquals(new String[]{"2", "c,\"d\""}, loaded.get(1));
+        for (int i = 0; i < streamed.size(); i++) {
+            assertArrayEquals(streamed.get(i), loaded.get(i));
+        }
+    }
+    
+    @Test
+    public void returnsNothingForMissingFile() throws IOException {
+        Files.delete(file);
+        assertTrue(MappedCSVLoader.load(file.toString(), true, CSVRow::toArray).isEmpty());
+    }
+}